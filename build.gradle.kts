@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.mypermissions"
@@ -23,6 +24,9 @@ dependencies {
     
     // Gson para JSON
     implementation("com.google.code.gson:gson:2.10.1")
+
+    // SQLite para armazenamento opcional dos usuários
+    implementation("org.xerial:sqlite-jdbc:3.46.1.3")
     
     // Test dependencies
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
@@ -39,6 +43,36 @@ tasks.test {
     useJUnitPlatform()
 }
 
+// Benchmarks do caminho de cache: ./gradlew jmh
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
+// Falha se alguma verificação com cache aquecido alocar memória (gc.alloc.rate.norm)
+val jmhAllocationCheck by tasks.registering {
+    val results = layout.buildDirectory.file("results/jmh/results.json")
+    inputs.file(results)
+    doLast {
+        @Suppress("UNCHECKED_CAST")
+        val benchmarks = groovy.json.JsonSlurper().parse(results.get().asFile) as List<Map<String, Any>>
+        for (benchmark in benchmarks) {
+            @Suppress("UNCHECKED_CAST")
+            val metrics = benchmark["secondaryMetrics"] as Map<String, Map<String, Any>>
+            val norm = (metrics["gc.alloc.rate.norm"]?.get("score") as Number?)?.toDouble() ?: continue
+            // O próprio JMH deixa uma fração de byte por operação
+            if (norm >= 1.0) {
+                throw GradleException("${benchmark["benchmark"]} allocates $norm B/op")
+            }
+        }
+    }
+}
+
+tasks.named("jmh") {
+    finalizedBy(jmhAllocationCheck)
+}
+
 tasks.jar {
     manifest {
         attributes(
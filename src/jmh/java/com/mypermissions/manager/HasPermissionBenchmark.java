@@ -0,0 +1,96 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.ConfigManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Permission checks that hit a cache. Run with the gc profiler (the jmh task does);
+ * jmhAllocationCheck fails the build if any of them allocates, i.e. if
+ * gc.alloc.rate.norm isn't zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HasPermissionBenchmark {
+
+    private static final PermissionNode ADMIN = PermissionNode.of("mypermissions.admin");
+
+    private Path dataFolder;
+    private ConfigManager configManager;
+    private PermissionManager permissionManager;
+    private UUID uuid;
+    private String uuidString;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("mypermissions-jmh");
+        configManager = new ConfigManager(dataFolder);
+        permissionManager = new PermissionManager(configManager.getConfig());
+        configManager.addListener(permissionManager::recompile);
+
+        uuid = UUID.randomUUID();
+        uuidString = uuid.toString();
+        configManager.update(config -> {
+            // No superuser group, so wildcard matches go through the result cache
+            config.editOrCreateUser(uuidString).getPermissions().addAll(List.of("mypermissions.admin", "myplugin.*"));
+            return true;
+        });
+
+        // Fill the caches, so every benchmark below only measures hits
+        permissionManager.hasPermission(uuid, "myplugin.fly");
+        permissionManager.hasPermission(uuid, "mypermissions.admin");
+        permissionManager.hasPermission(uuid, ADMIN);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        permissionManager.close();
+        configManager.close();
+        try (Stream<Path> files = Files.walk(dataFolder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public boolean uuidAndName() {
+        return permissionManager.hasPermission(uuid, "mypermissions.admin");
+    }
+
+    @Benchmark
+    public boolean uuidAndWildcardName() {
+        return permissionManager.hasPermission(uuid, "myplugin.fly");
+    }
+
+    @Benchmark
+    public boolean uuidStringAndName() {
+        return permissionManager.hasPermission(uuidString, "mypermissions.admin");
+    }
+
+    @Benchmark
+    public boolean uuidAndHandle() {
+        return permissionManager.hasPermission(uuid, ADMIN);
+    }
+}
@@ -2,6 +2,7 @@ package com.mypermissions;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -23,7 +24,9 @@ import com.mypermissions.config.ConfigManager;
 import com.mypermissions.config.MyPermissionsConfig;
 import com.mypermissions.listener.ChatListener;
 import com.mypermissions.listener.PlayerListener;
+import com.mypermissions.manager.NodeSet;
 import com.mypermissions.manager.PermissionManager;
+import com.mypermissions.manager.PermissionNode;
 import com.mypermissions.provider.MyPermissionsProvider;
 
 public class Main extends JavaPlugin {
@@ -50,6 +53,9 @@ public class Main extends JavaPlugin {
             // Initialize PermissionManager for permission checking
             permissionManager = new PermissionManager();
 
+            // Recompile permissions whenever a new config snapshot is published
+            configManager.addListener(permissionManager::recompile);
+
             // Register our provider with Hytale's permission system
             MyPermissionsProvider provider = new MyPermissionsProvider(configManager, permissionManager);
             PermissionsModule.get().addProvider(provider);
@@ -100,6 +106,18 @@ public class Main extends JavaPlugin {
         }
     }
 
+    @Override
+    protected void shutdown() {
+        if (permissionManager != null) {
+            permissionManager.close();
+        }
+        if (configManager != null) {
+            // Write changes still waiting in the background saver
+            configManager.close();
+        }
+        super.shutdown();
+    }
+
     public static ConfigManager getConfigManager() {
         return configManager;
     }
@@ -124,7 +142,46 @@ public class Main extends JavaPlugin {
         if (permissionManager == null || uuid == null || permission == null) {
             return false;
         }
-        return permissionManager.hasPermission(uuid.toString(), permission);
+        return permissionManager.hasPermission(uuid, permission);
+    }
+
+    /**
+     * Checks if a player has a specific permission
+     * @param uuid Player's UUID
+     * @param permission Permission node handle, created once with {@link PermissionNode#of}
+     * @return true if the player has the permission
+     */
+    public static boolean hasPermission(UUID uuid, PermissionNode permission) {
+        if (permissionManager == null || uuid == null || permission == null) {
+            return false;
+        }
+        return permissionManager.hasPermission(uuid, permission);
+    }
+
+    /**
+     * Checks several permissions of a player at once
+     * @param uuid Player's UUID
+     * @param permissions Permission nodes to check
+     * @return Bit i is set when the player has permissions[i]
+     */
+    public static BitSet hasPermissions(UUID uuid, String... permissions) {
+        if (permissionManager == null || uuid == null || permissions == null) {
+            return new BitSet();
+        }
+        return permissionManager.hasPermissions(uuid, permissions);
+    }
+
+    /**
+     * Checks every permission of a node set at once
+     * @param uuid Player's UUID
+     * @param permissions Node set, created once with {@link NodeSet#of}
+     * @return Bit i is set when the player has the i-th permission of the set
+     */
+    public static long hasPermissions(UUID uuid, NodeSet permissions) {
+        if (permissionManager == null || uuid == null || permissions == null) {
+            return 0L;
+        }
+        return permissionManager.hasPermissions(uuid, permissions);
     }
 
     /**
@@ -10,6 +10,7 @@ import com.mypermissions.config.MyPermissionsConfig;
 
 import javax.annotation.Nonnull;
 import java.awt.Color;
+import java.util.ArrayList;
 
 public class MyPermsGroupCommand extends CommandBase {
     private final OptionalArg<String> arg1, arg2, arg3;
@@ -88,8 +89,8 @@ public class MyPermsGroupCommand extends CommandBase {
             ctx.sendMessage(Message.raw("Group '" + groupName + "' already exists!").color(Color.RED));
             return;
         }
-        Main.getConfig().getGroups().put(groupName, new MyPermissionsConfig.GroupData());
-        Main.getConfigManager().save();
+        Main.getConfigManager().update(config ->
+            config.getGroups().putIfAbsent(groupName, new MyPermissionsConfig.GroupData()) == null);
         ctx.sendMessage(Message.raw("Group '" + groupName + "' created successfully!").color(Color.GREEN));
     }
 
@@ -103,36 +104,36 @@ public class MyPermsGroupCommand extends CommandBase {
         String defaultGroup = Main.getConfig().getDefaultGroup();
         
         // Count how many users will be affected
-        int affectedUsers = 0;
+        int[] affectedUsers = {0};
         
-        // Remove group from all users and add default group
-        for (var userData : Main.getConfig().getUsers().values()) {
-            if (userData.getGroups().remove(groupName)) {
-                affectedUsers++;
-                // User had this group, add default if not already present
-                if (!userData.getGroups().contains(defaultGroup)) {
-                    userData.getGroups().add(defaultGroup);
+        Main.getConfigManager().update(config -> {
+            // Remove group from all users and add default group
+            for (String uuid : new ArrayList<>(config.getUsers().keySet())) {
+                if (config.getUsers().get(uuid).getGroups().contains(groupName)) {
+                    var userData = config.editUser(uuid);
+                    userData.getGroups().remove(groupName);
+                    affectedUsers[0]++;
+                    // User had this group, add default if not already present
+                    if (!userData.getGroups().contains(defaultGroup)) {
+                        userData.getGroups().add(defaultGroup);
+                    }
                 }
             }
-        }
-        
-        // Remove this group from all parent lists
-        for (var group : Main.getConfig().getGroups().values()) {
-            group.getParents().remove(groupName);
-        }
-        
-        // Delete the group
-        Main.getConfig().getGroups().remove(groupName);
-        
-        // Clear permission cache
-        Main.getPermissionManager().clearAllCache();
-        
-        // Save config
-        Main.getConfigManager().save();
+            
+            // Remove this group from all parent lists
+            for (String name : new ArrayList<>(config.getGroups().keySet())) {
+                if (config.getGroups().get(name).getParents().contains(groupName)) {
+                    config.editGroup(name).getParents().remove(groupName);
+                }
+            }
+            
+            // Delete the group
+            return config.getGroups().remove(groupName) != null;
+        });
         
         ctx.sendMessage(Message.raw("Group '" + groupName + "' deleted successfully!").color(Color.GREEN));
-        if (affectedUsers > 0) {
-            ctx.sendMessage(Message.raw(affectedUsers + " user(s) moved to '" + defaultGroup + "' group").color(Color.YELLOW));
+        if (affectedUsers[0] > 0) {
+            ctx.sendMessage(Message.raw(affectedUsers[0] + " user(s) moved to '" + defaultGroup + "' group").color(Color.YELLOW));
         }
     }
 
@@ -186,9 +187,14 @@ public class MyPermsGroupCommand extends CommandBase {
 
         try {
             int priority = Integer.parseInt(priorityStr);
-            groupData.setPriority(priority);
-            Main.getConfigManager().save();
-            Main.getPermissionManager().clearAllCache();
+            Main.getConfigManager().update(config -> {
+                var group = config.editGroup(groupName);
+                if (group == null) {
+                    return false;
+                }
+                group.setPriority(priority);
+                return true;
+            });
             ctx.sendMessage(Message.raw("[OK] Priority of group '" + groupName + "' set to " + priority).color(Color.GREEN));
         } catch (NumberFormatException e) {
             ctx.sendMessage(Message.raw("Invalid number! Usage: /mpgroup setpriority <group> <number>").color(Color.RED));
@@ -205,9 +211,10 @@ public class MyPermsGroupCommand extends CommandBase {
             ctx.sendMessage(Message.raw("Group '" + groupName + "' already has permission '" + permission + "'!").color(Color.YELLOW));
             return;
         }
-        groupData.getPermissions().add(permission);
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearCache();
+        Main.getConfigManager().update(config -> {
+            var group = config.editGroup(groupName);
+            return group != null && group.getPermissions().add(permission);
+        });
         ctx.sendMessage(Message.raw("Permission '" + permission + "' added to group '" + groupName + "'!").color(Color.GREEN));
     }
 
@@ -217,12 +224,14 @@ public class MyPermsGroupCommand extends CommandBase {
             ctx.sendMessage(Message.raw("Group '" + groupName + "' does not exist!").color(Color.RED));
             return;
         }
-        if (!groupData.getPermissions().remove(permission)) {
+        boolean removed = Main.getConfigManager().update(config -> {
+            var group = config.editGroup(groupName);
+            return group != null && group.getPermissions().remove(permission);
+        });
+        if (!removed) {
             ctx.sendMessage(Message.raw("Group '" + groupName + "' does not have permission '" + permission + "'!").color(Color.YELLOW));
             return;
         }
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearCache();
         ctx.sendMessage(Message.raw("Permission '" + permission + "' removed from group '" + groupName + "'!").color(Color.GREEN));
     }
 
@@ -236,11 +245,22 @@ public class MyPermsGroupCommand extends CommandBase {
             ctx.sendMessage(Message.raw("Parent group '" + parentName + "' does not exist!").color(Color.RED));
             return;
         }
-        if (!groupData.getParents().contains(parentName)) {
-            groupData.getParents().add(parentName);
+        // Checked against the config being edited, so concurrent parent edits can't form a cycle
+        boolean cycle = !Main.getConfigManager().update(config -> {
+            var group = config.getGroups().get(groupName);
+            if (group == null || group.getParents().contains(parentName)) {
+                return false;
+            }
+            if (config.inheritsFrom(parentName, groupName)) {
+                return false;
+            }
+            config.editGroup(groupName).getParents().add(parentName);
+            return true;
+        }) && Main.getConfig().inheritsFrom(parentName, groupName);
+        if (cycle) {
+            ctx.sendMessage(Message.raw("Group '" + parentName + "' already inherits from '" + groupName + "'; this would create a cycle!").color(Color.RED));
+            return;
         }
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearCache();
         ctx.sendMessage(Message.raw("Parent '" + parentName + "' set for group '" + groupName + "'!").color(Color.GREEN));
     }
 }
@@ -25,7 +25,6 @@ public class MyPermsReloadCommand extends CommandBase {
 
         try {
             Main.getConfigManager().reload();
-            Main.getPermissionManager().clearCache();
             ctx.sendMessage(Message.raw("Configuration reloaded successfully!").color(Color.GREEN));
         } catch (Exception e) {
             ctx.sendMessage(Message.raw("Error reloading configuration: " + e.getMessage()).color(Color.RED));
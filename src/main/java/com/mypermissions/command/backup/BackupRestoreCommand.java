@@ -31,9 +31,7 @@ public class BackupRestoreCommand extends CommandBase {
         try {
             boolean success = Main.getConfigManager().restoreFromBackup(backupName);
             if (success) {
-                Main.getPermissionManager().clearAllCache();
                 ctx.sendMessage(Message.raw("[OK] Config restored from backup: " + backupName).color(Color.GREEN));
-                ctx.sendMessage(Message.raw("Use /mpreload to apply changes").color(Color.YELLOW));
             } else {
                 ctx.sendMessage(Message.raw("Failed to restore backup!").color(Color.RED));
             }
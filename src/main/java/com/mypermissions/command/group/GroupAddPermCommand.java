@@ -42,9 +42,10 @@ public class GroupAddPermCommand extends CommandBase {
             return;
         }
 
-        groupData.getPermissions().add(permission);
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearAllCache();
+        Main.getConfigManager().update(config -> {
+            var group = config.editGroup(groupName);
+            return group != null && group.getPermissions().add(permission);
+        });
         ctx.sendMessage(Message.raw("[OK] Permission '" + permission + "' added to group '" + groupName + "'!").color(Color.GREEN));
     }
 }
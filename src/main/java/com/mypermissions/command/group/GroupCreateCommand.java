@@ -34,9 +34,8 @@ public class GroupCreateCommand extends CommandBase {
             return;
         }
 
-        Main.getConfig().getGroups().put(groupName, new MyPermissionsConfig.GroupData());
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearAllCache();
+        Main.getConfigManager().update(config ->
+            config.getGroups().putIfAbsent(groupName, new MyPermissionsConfig.GroupData()) == null);
         ctx.sendMessage(Message.raw("[OK] Group '" + groupName + "' created successfully!").color(Color.GREEN));
     }
 }
@@ -38,9 +38,7 @@ public class GroupDeleteCommand extends CommandBase {
             return;
         }
 
-        Main.getConfig().getGroups().remove(groupName);
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearAllCache();
+        Main.getConfigManager().update(config -> config.getGroups().remove(groupName) != null);
         ctx.sendMessage(Message.raw("[OK] Group '" + groupName + "' deleted successfully!").color(Color.GREEN));
     }
 }
@@ -37,13 +37,15 @@ public class GroupRemovePermCommand extends CommandBase {
             return;
         }
 
-        if (!groupData.getPermissions().remove(permission)) {
+        boolean removed = Main.getConfigManager().update(config -> {
+            var group = config.editGroup(groupName);
+            return group != null && group.getPermissions().remove(permission);
+        });
+        if (!removed) {
             ctx.sendMessage(Message.raw("Group doesn't have this permission!").color(Color.YELLOW));
             return;
         }
 
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearAllCache();
         ctx.sendMessage(Message.raw("[OK] Permission '" + permission + "' removed from group '" + groupName + "'!").color(Color.GREEN));
     }
 }
@@ -10,6 +10,7 @@ import com.mypermissions.config.MyPermissionsConfig;
 
 import javax.annotation.Nonnull;
 import java.awt.Color;
+import java.util.ArrayList;
 
 public class GroupRenameCommand extends CommandBase {
     private final RequiredArg<String> oldNameArg;
@@ -46,37 +47,45 @@ public class GroupRenameCommand extends CommandBase {
             return;
         }
 
-        // Get the group data
-        MyPermissionsConfig.GroupData groupData = config.getGroups().get(oldName);
+        // Apply the whole rename as one change, so no reader sees it half-done
+        boolean renamed = Main.getConfigManager().update(draft -> {
+            if (!draft.getGroups().containsKey(oldName) || draft.getGroups().containsKey(newName)) {
+                return false;
+            }
 
-        // Remove old group and add with new name
-        config.getGroups().remove(oldName);
-        config.getGroups().put(newName, groupData);
+            // Remove old group and add with new name
+            MyPermissionsConfig.GroupData groupData = draft.getGroups().remove(oldName);
+            draft.getGroups().put(newName, groupData);
 
-        // Update defaultGroup if it was renamed
-        if (config.getDefaultGroup().equals(oldName)) {
-            config.setDefaultGroup(newName);
-        }
+            // Update defaultGroup if it was renamed
+            if (draft.getDefaultGroup().equals(oldName)) {
+                draft.setDefaultGroup(newName);
+            }
 
-        // Update all users that have this group
-        for (MyPermissionsConfig.UserData userData : config.getUsers().values()) {
-            if (userData.getGroups().contains(oldName)) {
-                userData.getGroups().remove(oldName);
-                userData.getGroups().add(newName);
+            // Update all users that have this group
+            for (String uuid : new ArrayList<>(draft.getUsers().keySet())) {
+                if (draft.getUsers().get(uuid).getGroups().contains(oldName)) {
+                    MyPermissionsConfig.UserData userData = draft.editUser(uuid);
+                    userData.getGroups().remove(oldName);
+                    userData.getGroups().add(newName);
+                }
             }
-        }
 
-        // Update parent references in other groups
-        for (MyPermissionsConfig.GroupData otherGroup : config.getGroups().values()) {
-            if (otherGroup.getParents().contains(oldName)) {
-                otherGroup.getParents().remove(oldName);
-                otherGroup.getParents().add(newName);
+            // Update parent references in other groups
+            for (String otherName : new ArrayList<>(draft.getGroups().keySet())) {
+                if (draft.getGroups().get(otherName).getParents().contains(oldName)) {
+                    MyPermissionsConfig.GroupData otherGroup = draft.editGroup(otherName);
+                    otherGroup.getParents().remove(oldName);
+                    otherGroup.getParents().add(newName);
+                }
             }
-        }
+            return true;
+        });
 
-        // Clear cache and save
-        Main.getPermissionManager().clearCache();
-        Main.getConfigManager().save();
+        if (!renamed) {
+            ctx.sendMessage(Message.raw("Group '" + oldName + "' could not be renamed!").color(Color.RED));
+            return;
+        }
 
         ctx.sendMessage(Message.raw("[OK] Group renamed from '" + oldName + "' to '" + newName + "'!").color(Color.GREEN));
     }
@@ -47,12 +47,22 @@ public class GroupSetParentCommand extends CommandBase {
             return;
         }
 
-        if (!groupData.getParents().contains(parentName)) {
-            groupData.getParents().add(parentName);
+        // Checked against the config being edited, so concurrent parent edits can't form a cycle
+        boolean cycle = !Main.getConfigManager().update(config -> {
+            var group = config.getGroups().get(groupName);
+            if (group == null || group.getParents().contains(parentName)) {
+                return false;
+            }
+            if (config.inheritsFrom(parentName, groupName)) {
+                return false;
+            }
+            config.editGroup(groupName).getParents().add(parentName);
+            return true;
+        }) && Main.getConfig().inheritsFrom(parentName, groupName);
+        if (cycle) {
+            ctx.sendMessage(Message.raw("Group '" + parentName + "' already inherits from '" + groupName + "'; this would create a cycle!").color(Color.RED));
+            return;
         }
-        
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearAllCache();
         ctx.sendMessage(Message.raw("[OK] Parent '" + parentName + "' set for group '" + groupName + "'!").color(Color.GREEN));
     }
 }
@@ -37,9 +37,14 @@ public class GroupSetPriorityCommand extends CommandBase {
             return;
         }
 
-        groupData.setPriority(priority);
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearAllCache();
+        Main.getConfigManager().update(config -> {
+            var group = config.editGroup(groupName);
+            if (group == null) {
+                return false;
+            }
+            group.setPriority(priority);
+            return true;
+        });
         ctx.sendMessage(Message.raw("[OK] Priority of group '" + groupName + "' set to " + priority).color(Color.GREEN));
     }
 }
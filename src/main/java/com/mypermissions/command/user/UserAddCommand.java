@@ -9,7 +9,6 @@ import com.mypermissions.Main;
 
 import javax.annotation.Nonnull;
 import java.awt.Color;
-import java.util.UUID;
 
 public class UserAddCommand extends CommandBase {
     private final RequiredArg<String> playerArg;
@@ -49,9 +48,14 @@ public class UserAddCommand extends CommandBase {
             return;
         }
 
-        userData.getGroups().add(groupName);
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearCache(UUID.fromString(uuid));
+        Main.getConfigManager().update(config -> {
+            var user = config.editUser(uuid);
+            if (user == null || user.getGroups().contains(groupName)) {
+                return false;
+            }
+            user.getGroups().add(groupName);
+            return true;
+        });
         ctx.sendMessage(Message.raw("[OK] User '" + playerName + "' added to group '" + groupName + "'!").color(Color.GREEN));
     }
 }
@@ -9,7 +9,6 @@ import com.mypermissions.Main;
 
 import javax.annotation.Nonnull;
 import java.awt.Color;
-import java.util.UUID;
 
 public class UserAddPermCommand extends CommandBase {
     private final RequiredArg<String> playerArg;
@@ -44,9 +43,14 @@ public class UserAddPermCommand extends CommandBase {
             return;
         }
 
-        userData.getPermissions().add(permission);
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearCache(UUID.fromString(uuid));
+        Main.getConfigManager().update(config -> {
+            var user = config.editUser(uuid);
+            if (user == null || user.getPermissions().contains(permission)) {
+                return false;
+            }
+            user.getPermissions().add(permission);
+            return true;
+        });
         ctx.sendMessage(Message.raw("[OK] Permission '" + permission + "' added to user '" + playerName + "'!").color(Color.GREEN));
     }
 }
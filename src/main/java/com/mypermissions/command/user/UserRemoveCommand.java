@@ -9,7 +9,6 @@ import com.mypermissions.Main;
 
 import javax.annotation.Nonnull;
 import java.awt.Color;
-import java.util.UUID;
 
 public class UserRemoveCommand extends CommandBase {
     private final RequiredArg<String> playerArg;
@@ -38,14 +37,15 @@ public class UserRemoveCommand extends CommandBase {
             return;
         }
 
-        var userData = Main.getConfig().getUsers().get(uuid);
-        if (!userData.getGroups().remove(groupName)) {
+        boolean removed = Main.getConfigManager().update(config -> {
+            var user = config.editUser(uuid);
+            return user != null && user.getGroups().remove(groupName);
+        });
+        if (!removed) {
             ctx.sendMessage(Message.raw("User is not in this group!").color(Color.YELLOW));
             return;
         }
 
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearCache(UUID.fromString(uuid));
         ctx.sendMessage(Message.raw("[OK] User '" + playerName + "' removed from group '" + groupName + "'!").color(Color.GREEN));
     }
 }
@@ -9,7 +9,6 @@ import com.mypermissions.Main;
 
 import javax.annotation.Nonnull;
 import java.awt.Color;
-import java.util.UUID;
 
 public class UserRemovePermCommand extends CommandBase {
     private final RequiredArg<String> playerArg;
@@ -38,14 +37,15 @@ public class UserRemovePermCommand extends CommandBase {
             return;
         }
 
-        var userData = Main.getConfig().getUsers().get(uuid);
-        if (!userData.getPermissions().remove(permission)) {
+        boolean removed = Main.getConfigManager().update(config -> {
+            var user = config.editUser(uuid);
+            return user != null && user.getPermissions().remove(permission);
+        });
+        if (!removed) {
             ctx.sendMessage(Message.raw("User doesn't have this direct permission!").color(Color.YELLOW));
             return;
         }
 
-        Main.getConfigManager().save();
-        Main.getPermissionManager().clearCache(UUID.fromString(uuid));
         ctx.sendMessage(Message.raw("[OK] Permission '" + permission + "' removed from user '" + playerName + "'!").color(Color.GREEN));
     }
 }
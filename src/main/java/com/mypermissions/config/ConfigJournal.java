@@ -0,0 +1,254 @@
+package com.mypermissions.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.mypermissions.config.MyPermissionsConfig.GroupData;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only log of config changes (journal.log), so a change costs one small record
+ * instead of rewriting the whole config.json. Every record holds the full new state
+ * of one changed group (or the new default group), one JSON object per line;
+ * replaying a record twice therefore does no harm. Users are not journaled: a changed
+ * user is written to the storage backend right away (see {@link StorageBackend}), and
+ * user records left by older versions are only replayed.
+ *
+ * On startup the records are replayed on top of config.json. Once the journal grows
+ * past its threshold, {@link ConfigManager} compacts it: the journal is moved aside
+ * (journal.log.1), a fresh config.json is written, and the moved journal is deleted.
+ * A crash at any point leaves config.json plus journals that replay to the same state.
+ *
+ * A damaged record ends the replay, and ConfigManager compacts right away: records
+ * appended after it would never be read back.
+ *
+ * Only used under ConfigManager's locks, never concurrently.
+ */
+final class ConfigJournal {
+    // One record per line
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private static final String USER = "user";
+    private static final String GROUP = "group";
+    private static final String DEFAULT_GROUP = "defaultGroup";
+
+    private final Path path;
+    private final Path rotated;
+
+    private FileChannel channel;
+    private long size;
+    // Whether the last replay stopped at a damaged record
+    private boolean damaged;
+
+    /**
+     * A change to one entity; a missing value means it was removed
+     */
+    private static final class Record {
+        String type;
+        String key;
+        JsonElement value;
+
+        Record(String type, String key, JsonElement value) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    ConfigJournal(Path dataFolder) {
+        this.path = dataFolder.resolve("journal.log");
+        this.rotated = dataFolder.resolve("journal.log.1");
+    }
+
+    /**
+     * Appends a record for every group that changed between two snapshots, and for a
+     * new default group. Copy-on-write gives every edited group a new instance, so
+     * identity tells them apart.
+     *
+     * @param force Whether to wait until the records reached the disk
+     * @return The journal's size in bytes
+     */
+    long append(MyPermissionsConfig before, MyPermissionsConfig after, boolean force) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        if (!before.getDefaultGroup().equals(after.getDefaultGroup())) {
+            appendRecord(lines, new Record(DEFAULT_GROUP, after.getDefaultGroup(), null));
+        }
+        appendChanges(lines, GROUP, before.getGroups(), after.getGroups());
+        if (lines.isEmpty()) {
+            return size;
+        }
+
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            size = channel.size();
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        size += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (force) {
+            channel.force(false);
+        }
+        return size;
+    }
+
+    private static <T> void appendChanges(StringBuilder lines, String type, Map<String, T> before, Map<String, T> after) {
+        for (String key : SnapshotMap.changedKeys(before, after)) {
+            T value = after.get(key);
+            appendRecord(lines, new Record(type, key, value != null ? GSON.toJsonTree(value) : null));
+        }
+    }
+
+    private static void appendRecord(StringBuilder lines, Record record) {
+        lines.append(GSON.toJson(record)).append('\n');
+    }
+
+    /**
+     * Applies the journals on top of a config freshly read from config.json
+     *
+     * @return Number of records applied
+     */
+    int replay(MyPermissionsConfig config) {
+        if (config.getGroups() == null) {
+            config.setGroups(new HashMap<>());
+        }
+        if (config.getUsers() == null) {
+            config.setUsers(new HashMap<>());
+        }
+        damaged = false;
+        return replay(rotated, config) + replay(path, config);
+    }
+
+    /**
+     * Whether the last replay stopped at a damaged record
+     */
+    boolean isDamaged() {
+        return damaged;
+    }
+
+    private int replay(Path file, MyPermissionsConfig config) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        int applied = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Record record;
+                try {
+                    record = GSON.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    record = null;
+                }
+                if (record == null || record.type == null || record.key == null) {
+                    // A crash during an append only ever damages the last record
+                    System.err.println("[MyPermissions] Ignoring damaged journal record in " + file.getFileName());
+                    damaged = true;
+                    break;
+                }
+                if (apply(record, config)) {
+                    applied++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[MyPermissions] Failed to read journal " + file.getFileName() + ": " + e.getMessage());
+        }
+        return applied;
+    }
+
+    private static boolean apply(Record record, MyPermissionsConfig config) {
+        switch (record.type) {
+            case DEFAULT_GROUP -> config.setDefaultGroup(record.key);
+            case GROUP -> {
+                if (record.value == null || record.value.isJsonNull()) {
+                    config.getGroups().remove(record.key);
+                } else {
+                    config.getGroups().put(record.key, GSON.fromJson(record.value, GroupData.class));
+                }
+            }
+            case USER -> {
+                if (record.value == null || record.value.isJsonNull()) {
+                    config.getUsers().remove(record.key);
+                } else {
+                    config.getUsers().put(record.key, GSON.fromJson(record.value, UserData.class));
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Size of the journal being appended to, in bytes
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Moves the journal aside so a new config.json can absorb it; if an earlier
+     * compaction failed, the journal is added to the one still waiting
+     */
+    void rotate() throws IOException {
+        closeChannel();
+        size = 0;
+        if (!Files.exists(path)) {
+            return;
+        }
+        if (Files.exists(rotated)) {
+            Files.write(rotated, Files.readAllBytes(path), StandardOpenOption.APPEND);
+            Files.delete(path);
+        } else {
+            Files.move(path, rotated, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Deletes the moved journal once a config.json containing it is on disk
+     */
+    void dropRotated() throws IOException {
+        Files.deleteIfExists(rotated);
+    }
+
+    /**
+     * Deletes every record, because config.json was replaced as a whole
+     */
+    void clear() throws IOException {
+        closeChannel();
+        size = 0;
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(rotated);
+    }
+
+    void close() {
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            System.err.println("[MyPermissions] Failed to close journal: " + e.getMessage());
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.mypermissions.config;
 
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.mypermissions.config.MyPermissionsConfig.Settings;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 public class ConfigManager {
@@ -17,20 +33,265 @@ public class ConfigManager {
             .setPrettyPrinting()
             .disableHtmlEscaping()
             .create();
+    // config.json without the users, which live in the storage backend (see StorageBackend)
+    private static final Gson HEAD_GSON = new GsonBuilder()
+            .setPrettyPrinting()
+            .disableHtmlEscaping()
+            .setExclusionStrategies(new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes field) {
+                    return field.getDeclaringClass() == MyPermissionsConfig.class && field.getName().equals("users");
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> type) {
+                    return false;
+                }
+            })
+            .create();
     private static final DateTimeFormatter BACKUP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
     private static final int MAX_BACKUPS = 5; // Keep last 5 backups
+    private static final long BACKUP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(30); // At most one automatic backup per half hour
     
     private final Path configPath;
     private final Path backupFolder;
-    private MyPermissionsConfig config;
+
+    // Current frozen snapshot; readers never lock, writers swap in the next one
+    private final AtomicReference<MyPermissionsConfig> config = new AtomicReference<>();
+    private final List<Consumer<MyPermissionsConfig>> listeners = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object();
+
+    // Serializes writes to the config file between the saver and restores
+    private final Object fileLock = new Object();
+    // Last forced write with the "interval" fsync policy, guarded by fileLock
+    private long lastForce;
+    // Changes when config.json is replaced as a whole (restore, reload); written holding writeLock and fileLock
+    private long fileGeneration;
+    // Runs one compaction at a time; taken before writeLock and fileLock
+    private final Object compactLock = new Object();
+    // Guards the journal; taken after writeLock, before fileLock
+    private final Object journalLock = new Object();
+    private final ConfigSaver saver = new ConfigSaver(this::appendJournal, this::compact);
+    private final ConfigJournal journal;
+    // Latest snapshot whose changes are all in config.json or the journal, guarded by journalLock
+    private MyPermissionsConfig journaled;
+    private final Path dataFolder;
+    private final JsonStorage jsonStorage;
+
+    // Backend picked by the settings, and the one users were last loaded from if
+    // they still have to be moved over; guarded by fileLock
+    private StorageBackend storage;
+    private StorageBackend migratedFrom;
+
+    // What the files currently hold, guarded by fileLock: the snapshot backed up before
+    // the next write, and the users the backend holds (null if all must be rewritten)
+    private MyPermissionsConfig onDisk;
+    private Map<String, UserData> onDiskUsers;
+    // When the latest backup was taken (0 if never), guarded by fileLock
+    private long lastBackup = -1;
+
+    // Whether the last load read its users from the backend the settings pick (or
+    // restored a backup into it)
+    private boolean loadedStoredUsers;
 
     public ConfigManager(Path dataFolder) {
         this.configPath = dataFolder.resolve("config.json");
         this.backupFolder = dataFolder.resolve("backups");
-        this.config = load();
+        this.journal = new ConfigJournal(dataFolder);
+        this.dataFolder = dataFolder;
+        this.jsonStorage = new JsonStorage(dataFolder, GSON);
+        if (loadAndPublish()) {
+            // Fold replayed changes (or users still kept elsewhere) into the files right away
+            compact();
+        }
+    }
+
+    /**
+     * Saves any pending change and stops the background writer
+     */
+    public void close() {
+        saver.close();
+        synchronized (journalLock) {
+            journal.close();
+        }
+        synchronized (fileLock) {
+            try {
+                if (storage != null) {
+                    storage.close();
+                }
+            } catch (IOException e) {
+                System.err.println("[MyPermissions] Failed to close user storage: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the backend the settings pick; switching backends makes the next write
+     * store every user
+     */
+    private StorageBackend storageFor(Settings settings) {
+        synchronized (fileLock) {
+            boolean sqlite = settings != null && settings.getStorage() == Settings.StorageType.SQLITE;
+            if (storage == null || (storage instanceof SqliteStorage) != sqlite) {
+                try {
+                    if (storage != null) {
+                        storage.close();
+                    }
+                } catch (IOException e) {
+                    System.err.println("[MyPermissions] Failed to close user storage: " + e.getMessage());
+                }
+                storage = sqlite ? new SqliteStorage(dataFolder) : jsonStorage;
+                onDiskUsers = null;
+            }
+            return storage;
+        }
+    }
+
+    /**
+     * Registers a listener called with every newly published snapshot
+     */
+    public void addListener(Consumer<MyPermissionsConfig> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Applies a change to the config (copy-on-write).
+     * The mutator edits a draft copy of the current snapshot; if it returns true,
+     * the draft is frozen and published. Changed users are written to the storage backend
+     * and other changes appended to the journal (see {@link ConfigJournal}), with
+     * config.json rewritten in the background (see {@link ConfigSaver}), so the caller
+     * never waits for the disk. Readers keep seeing
+     * the previous snapshot until the swap, never a half-applied change.
+     *
+     * @param mutator Edits the draft, returns false to discard it
+     * @return true if a new snapshot was published
+     */
+    public boolean update(Predicate<MyPermissionsConfig> mutator) {
+        synchronized (writeLock) {
+            MyPermissionsConfig previous = config.get();
+            MyPermissionsConfig draft = previous.copy();
+            if (!mutator.test(draft)) {
+                return false;
+            }
+            publish(draft);
+
+            Settings settings = draft.getSettings();
+            if (settings.getJournalCompactBytes() > 0) {
+                saver.markAppend();
+            } else {
+                saver.markDirty(settings.getSaveDelayMillis(), settings.getSaveMaxDelayMillis());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Saves every change published since the last append: changed users to the storage
+     * backend, the rest to the journal, scheduling a compaction once it grew too large.
+     * Runs on the saver thread, so a burst of changes shares one write and one fsync.
+     */
+    private void appendJournal() {
+        synchronized (journalLock) {
+            MyPermissionsConfig next = config.get();
+            Settings settings = next.getSettings();
+            long threshold = settings.getJournalCompactBytes();
+            if (journaled == next || threshold <= 0) {
+                return;
+            }
+            try {
+                boolean force;
+                synchronized (fileLock) {
+                    force = shouldForce(settings);
+                }
+                if (appendTo(next, force) >= threshold) {
+                    saver.markDirty(settings.getSaveDelayMillis(), settings.getSaveMaxDelayMillis());
+                }
+            } catch (IOException e) {
+                System.err.println("[MyPermissions] Failed to save changes, saving the whole config: " + e.getMessage());
+                saver.markDirty(settings.getSaveDelayMillis(), settings.getSaveMaxDelayMillis());
+            }
+        }
+    }
+
+    /**
+     * Saves every change not written yet, appending to the journal even with the
+     * journal disabled; call holding writeLock
+     */
+    private void flushJournal() {
+        synchronized (journalLock) {
+            MyPermissionsConfig current = config.get();
+            if (journaled == current) {
+                return;
+            }
+            try {
+                boolean force;
+                synchronized (fileLock) {
+                    force = shouldForce(current.getSettings());
+                }
+                appendTo(current, force);
+            } catch (IOException e) {
+                System.err.println("[MyPermissions] Failed to save changes, saving the whole config: " + e.getMessage());
+                synchronized (fileLock) {
+                    if (write(current)) {
+                        journaled = current;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the changes between the last journaled snapshot and the given one: the
+     * changed users to the backend, only rewriting what they touch, and everything
+     * else to the journal; call holding journalLock
+     *
+     * @return The journal's size in bytes
+     */
+    private long appendTo(MyPermissionsConfig next, boolean force) throws IOException {
+        synchronized (fileLock) {
+            storeUsers(next.getSettings(), next.getUsers(), force);
+        }
+        long size = journal.append(journaled, next, force);
+        journaled = next;
+        return size;
+    }
+
+    private void publish(MyPermissionsConfig next) {
+        next.freeze();
+        config.set(next);
+        for (Consumer<MyPermissionsConfig> listener : listeners) {
+            listener.accept(next);
+        }
+    }
+
+    /**
+     * Loads config.json, replays the journal on top of it and publishes the result
+     *
+     * @return true if the files should be rewritten: records were replayed, the journal
+     *         is damaged, or the users were loaded from somewhere else
+     */
+    private boolean loadAndPublish() {
+        MyPermissionsConfig loaded = load();
+        // Replayed users get new instances, so they differ from what the shards hold
+        Map<String, UserData> diskUsers = loadedStoredUsers ? new HashMap<>(loaded.getUsers()) : null;
+        int replayed = journal.replay(loaded);
+        if (replayed > 0) {
+            System.out.println("[MyPermissions] Replayed " + replayed + " journal record(s)");
+        }
+        publish(loaded);
+        synchronized (journalLock) {
+            journaled = loaded;
+        }
+        synchronized (fileLock) {
+            onDisk = loaded;
+            onDiskUsers = diskUsers;
+        }
+        // Appending after a damaged record would lose the new records on the next load
+        return replayed > 0 || journal.isDamaged() || !loadedStoredUsers;
     }
 
     private MyPermissionsConfig load() {
+        loadedStoredUsers = false;
         try {
             // Create directories if they don't exist
             Files.createDirectories(configPath.getParent());
@@ -41,6 +302,7 @@ public class ConfigManager {
                 MyPermissionsConfig defaultConfig = new MyPermissionsConfig();
                 save(defaultConfig);
                 createConfigGuide();
+                loadedStoredUsers = true;
                 return defaultConfig;
             }
 
@@ -53,6 +315,29 @@ public class ConfigManager {
                 System.err.println("[MyPermissions] Config corrupted! Attempting to restore from backup...");
                 return restoreFromLatestBackup();
             }
+
+            // Users live in the storage backend; a users section in config.json is from an older version
+            StorageBackend backend = storageFor(loadedConfig.getSettings());
+            Map<String, UserData> users = new HashMap<>();
+            if (loadedConfig.getUsers() != null) {
+                users.putAll(loadedConfig.getUsers());
+            }
+            if (backend.exists()) {
+                users.putAll(backend.loadUsers());
+                loadedStoredUsers = true;
+            } else {
+                // Switched backends; the users are moved over on the next write
+                StorageBackend other = backend == jsonStorage ? new SqliteStorage(dataFolder) : jsonStorage;
+                if (other.exists()) {
+                    users.putAll(other.loadUsers());
+                    synchronized (fileLock) {
+                        migratedFrom = other;
+                    }
+                } else {
+                    other.close();
+                }
+            }
+            loadedConfig.setUsers(users);
             
             return loadedConfig;
 
@@ -70,39 +355,218 @@ public class ConfigManager {
         }
     }
 
+    /**
+     * Saves the current snapshot right away
+     */
     public void save() {
-        save(this.config);
+        saver.discard();
+        compact();
     }
 
     private void save(MyPermissionsConfig config) {
+        synchronized (fileLock) {
+            write(config);
+        }
+    }
+
+    /**
+     * Writes the current snapshot to config.json and drops the journal it contains
+     */
+    private void compact() {
+        synchronized (compactLock) {
+            MyPermissionsConfig snapshot;
+            long generation;
+            boolean rotated;
+            synchronized (writeLock) {
+                snapshot = config.get();
+                generation = fileGeneration;
+                synchronized (journalLock) {
+                    try {
+                        // Changes not appended yet go in too, so the moved journal adds up to the snapshot
+                        if (journaled != snapshot && snapshot.getSettings().getJournalCompactBytes() > 0) {
+                            appendTo(snapshot, false);
+                        }
+                    } catch (IOException e) {
+                        System.err.println("[MyPermissions] Failed to append to journal: " + e.getMessage());
+                    }
+                    journaled = snapshot;
+                    try {
+                        journal.rotate();
+                        rotated = true;
+                    } catch (IOException e) {
+                        System.err.println("[MyPermissions] Failed to rotate journal: " + e.getMessage());
+                        rotated = false;
+                    }
+                }
+            }
+
+            synchronized (fileLock) {
+                if (generation != fileGeneration) {
+                    // config.json was replaced meanwhile; this snapshot is outdated
+                    return;
+                }
+                // Users are stored on every change, so the latest ones; the snapshot's may be older
+                if (write(snapshot, config.get().getUsers()) && rotated) {
+                    try {
+                        journal.dropRotated();
+                    } catch (IOException e) {
+                        System.err.println("[MyPermissions] Failed to delete compacted journal: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean write(MyPermissionsConfig config) {
+        return write(config, config.getUsers());
+    }
+
+    /**
+     * Writes a snapshot's users and config.json; call holding fileLock
+     *
+     * @param users Users to store along with the snapshot
+     */
+    private boolean write(MyPermissionsConfig config, Map<String, UserData> users) {
         try {
-            // Create backup before saving
-            if (Files.exists(configPath)) {
-                createBackup();
+            // Create backup before saving; every backup holds all users, so not on every save
+            if (onDisk != null && isBackupDue()) {
+                createBackup(onDisk);
             }
             
-            // Save config
-            String json = GSON.toJson(config);
-            Files.writeString(configPath, json);
-            
-            // Clean old backups
-            cleanOldBackups();
+            // Save the changed users, then config.json
+            boolean force = shouldForce(config.getSettings());
+            storeUsers(config.getSettings(), users, force);
+            writeAtomically(configPath, HEAD_GSON.toJson(config), force);
+            onDisk = config;
+            return true;
             
         } catch (IOException e) {
             System.err.println("[MyPermissions] Error saving config: " + e.getMessage());
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Brings the backend in line with the given users, upserting or deleting only those
+     * that changed since the last write, and retires the backend they were moved from;
+     * call holding fileLock
+     */
+    private void storeUsers(Settings settings, Map<String, UserData> users, boolean force) throws IOException {
+        StorageBackend backend = storageFor(settings);
+        Map<String, UserData> stored = onDiskUsers;
+        // Until this write succeeds, the next one can't trust what is stored
+        onDiskUsers = null;
+        if (stored == null) {
+            backend.writeUsers(users, force);
+        } else {
+            Set<String> changed = MyPermissionsConfig.changedKeys(stored, users);
+            if (!changed.isEmpty()) {
+                backend.batch(force, () -> {
+                    for (String uuid : changed) {
+                        UserData user = users.get(uuid);
+                        if (user != null) {
+                            backend.upsertUser(uuid, user);
+                        } else {
+                            backend.deleteUser(uuid);
+                        }
+                    }
+                });
+            }
+        }
+        onDiskUsers = users;
+        if (migratedFrom != null && migratedFrom != backend) {
+            System.out.println("[MyPermissions] Users moved to " + settings.getStorage().name().toLowerCase(Locale.ROOT) + " storage");
+            migratedFrom.archive();
+            migratedFrom.close();
+        }
+        migratedFrom = null;
+    }
+
+    /**
+     * Tells whether this write waits for the disk, according to the fsync policy
+     */
+    private boolean shouldForce(Settings settings) {
+        return switch (settings.getFsync()) {
+            case ALWAYS -> true;
+            case NEVER -> false;
+            case INTERVAL -> {
+                long now = System.nanoTime();
+                if (lastForce != 0 && now - lastForce < TimeUnit.MILLISECONDS.toNanos(settings.getFsyncIntervalMillis())) {
+                    yield false;
+                }
+                lastForce = now;
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * Replaces a file without ever leaving it half-written: the content goes to a
+     * sibling temp file first, which is then renamed over the target
+     *
+     * @param force Whether to wait until the content reached the disk
+     */
+    static void writeAtomically(Path target, String content, boolean force) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (force) {
+                channel.force(true);
+            }
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (force) {
+            // Make the rename itself durable; not every platform can open a directory
+            try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+                directory.force(true);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Tells whether the interval since the latest backup (kept across restarts) has passed
+     */
+    private boolean isBackupDue() {
+        if (lastBackup < 0) {
+            lastBackup = 0;
+            try {
+                Path latest = getLatestBackup();
+                if (latest != null) {
+                    lastBackup = Files.getLastModifiedTime(latest).toMillis();
+                }
+            } catch (IOException e) {
+                // No backup folder yet
+            }
         }
+        return System.currentTimeMillis() - lastBackup >= BACKUP_INTERVAL_MILLIS;
     }
 
     /**
-     * Creates a backup of the current config
+     * Creates a backup of the saved config; backups hold the users too, so each one
+     * can be restored on its own
      */
-    private void createBackup() {
+    private void createBackup(MyPermissionsConfig saved) {
         try {
             String timestamp = LocalDateTime.now().format(BACKUP_FORMAT);
             Path backupFile = backupFolder.resolve("config_" + timestamp + ".json");
-            Files.copy(configPath, backupFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.writeString(backupFile, GSON.toJson(saved));
+            lastBackup = System.currentTimeMillis();
             System.out.println("[MyPermissions] Backup created: " + backupFile.getFileName());
+
+            // Clean old backups
+            cleanOldBackups();
         } catch (IOException e) {
             System.err.println("[MyPermissions] Failed to create backup: " + e.getMessage());
         }
@@ -129,7 +593,8 @@ public class ConfigManager {
     }
 
     /**
-     * Restores config from the most recent backup
+     * Restores config from the most recent backup: its users replace the stored ones,
+     * the rest becomes config.json
      */
     private MyPermissionsConfig restoreFromLatestBackup() throws IOException {
         Path latestBackup = getLatestBackup();
@@ -140,9 +605,21 @@ public class ConfigManager {
         System.out.println("[MyPermissions] Restoring from backup: " + latestBackup.getFileName());
         String json = Files.readString(latestBackup);
         MyPermissionsConfig restored = GSON.fromJson(json, MyPermissionsConfig.class);
+        if (restored == null || restored.getGroups() == null) {
+            throw new IOException("Backup is corrupted: " + latestBackup.getFileName());
+        }
         
-        // Save as current config
-        Files.copy(latestBackup, configPath, StandardCopyOption.REPLACE_EXISTING);
+        if (restored.getUsers() == null) {
+            restored.setUsers(new HashMap<>());
+        }
+
+        // Save as current config; users the backend still holds would override the backup's
+        synchronized (fileLock) {
+            onDiskUsers = null;
+            storeUsers(restored.getSettings(), restored.getUsers(), true);
+        }
+        writeAtomically(configPath, HEAD_GSON.toJson(restored), true);
+        loadedStoredUsers = true;
         
         return restored;
     }
@@ -166,12 +643,29 @@ public class ConfigManager {
                 return false;
             }
             
-            // Create backup of current config before restoring
-            createBackup();
-            
             // Restore
-            this.config = restored;
-            Files.copy(backupFile, configPath, StandardCopyOption.REPLACE_EXISTING);
+            restored.freeze();
+            synchronized (writeLock) {
+                synchronized (journalLock) {
+                    synchronized (fileLock) {
+                        // Create backup of current config before restoring; it holds
+                        // the changes not written yet too
+                        createBackup(config.get());
+                        // Every shard is rewritten, so no user of the current config survives
+                        onDisk = null;
+                        onDiskUsers = null;
+                        if (!write(restored)) {
+                            // Nothing was replaced; the next save rewrites every user
+                            return false;
+                        }
+                        // The journal only holds changes older than the restored files
+                        fileGeneration++;
+                        journal.clear();
+                    }
+                    journaled = restored;
+                }
+                publish(restored);
+            }
             
             System.out.println("[MyPermissions] Config restored from: " + backupName);
             return true;
@@ -238,6 +732,25 @@ public class ConfigManager {
   "defaultGroup": "default",
   "_defaultGroup_info": "The group automatically assigned to new players when they join the server",
   
+  "settings": {
+    "cacheMaxEntries": 100000,
+    "_cacheMaxEntries_info": "How many permission check results are kept in memory (shrinks automatically when the server runs low on memory)",
+    "threadCacheSize": 256,
+    "_threadCacheSize_info": "How many recent check results each server thread keeps for itself (0 disables it)",
+    "saveDelayMillis": 1000,
+    "_saveDelayMillis_info": "Changes are written to disk once no other change came in for this long",
+    "saveMaxDelayMillis": 5000,
+    "_saveMaxDelayMillis_info": "Longest a change may wait to be written while changes keep coming",
+    "fsync": "always",
+    "_fsync_info": "When a save waits until the data reached the disk: always, interval (at most once per fsyncIntervalMillis) or never",
+    "fsyncIntervalMillis": 10000,
+    "_fsyncIntervalMillis_info": "Minimum time between forced writes with the 'interval' policy",
+    "journalCompactBytes": 1048576,
+    "_journalCompactBytes_info": "Changes are appended to journal.log; config.json is rewritten once the journal grows past this size (0 rewrites config.json on every change)",
+    "storage": "json",
+    "_storage_info": "Where players are stored: json (users/*.json shard files) or sqlite (users.db); switching moves them over on the next start or /mpreload"
+  },
+  
   "groups": {
     "default": {
       "_group_description": "Basic group for all regular players",
@@ -353,6 +866,7 @@ public class ConfigManager {
   
   "users": {
     "_users_info": "Player data stored by UUID",
+    "_users_storage": "Players are kept in users/00.json to users/ff.json (or users.db with sqlite storage), not in config.json; each shard holds a users object like this one",
     "_structure_example": "uuid-string",
     
     "00000000-0000-0000-0000-000000000000": {
@@ -430,11 +944,25 @@ public class ConfigManager {
         }
     }
 
+    /**
+     * Gets the current config snapshot (read-only)
+     */
     public MyPermissionsConfig getConfig() {
-        return config;
+        return config.get();
     }
 
     public void reload() {
-        this.config = load();
+        synchronized (writeLock) {
+            // Changes not written yet go to the journal, which is replayed over the files
+            // read back, so neither they nor edits made to the files by hand are lost
+            flushJournal();
+            synchronized (fileLock) {
+                fileGeneration++;
+            }
+            if (loadAndPublish()) {
+                // Store what was loaded from elsewhere (e.g. after switching backends)
+                saver.markDirty(0, 0);
+            }
+        }
     }
 }
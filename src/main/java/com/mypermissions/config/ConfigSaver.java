@@ -0,0 +1,158 @@
+package com.mypermissions.config;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind saving for {@link ConfigManager}: a change only marks the config dirty,
+ * and one background writer saves the latest snapshot once no change came in for the
+ * debounce window, or at the latest after the maximum delay. A burst of changes
+ * (e.g. many players joining at once) becomes a single disk write.
+ *
+ * Journal appends run on the same thread as soon as it is free; changes coming in
+ * while an append (and its fsync) is under way are appended together by the next one.
+ *
+ * Only the latest snapshot is ever pending, so a slow disk never queues up work and
+ * changing the config never waits for it. {@link #close()} writes what is left.
+ */
+final class ConfigSaver {
+
+    private final Runnable appender;
+    private final Runnable writer;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private boolean appendPending;
+    private boolean dirty;
+    private boolean scheduled;
+    private boolean closed;
+    private long firstDirty;
+    private long deadline;
+
+    /**
+     * @param appender Appends the changes made since the last append to the journal
+     * @param writer Saves the current snapshot
+     */
+    ConfigSaver(Runnable appender, Runnable writer) {
+        this.appender = appender;
+        this.writer = writer;
+        this.executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "MyPermissions-Saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Closing writes on the caller's thread instead of waiting out the window
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Marks the config as changed
+     *
+     * @param debounceMillis Quiet time to wait for before writing
+     * @param maxDelayMillis Longest a change may stay unsaved while changes keep coming
+     */
+    void markDirty(long debounceMillis, long maxDelayMillis) {
+        synchronized (this) {
+            if (!closed) {
+                long now = System.nanoTime();
+                if (!dirty) {
+                    dirty = true;
+                    firstDirty = now;
+                }
+                deadline = Math.min(now + TimeUnit.MILLISECONDS.toNanos(Math.max(0, debounceMillis)),
+                    firstDirty + TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis)));
+                if (!scheduled) {
+                    scheduled = true;
+                    executor.schedule(this::run, deadline - now, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+        }
+        // Changes after shutdown are written through
+        writer.run();
+    }
+
+    /**
+     * Asks for the latest changes to be appended to the journal
+     */
+    void markAppend() {
+        synchronized (this) {
+            if (!closed) {
+                if (!appendPending) {
+                    appendPending = true;
+                    executor.execute(this::runAppend);
+                }
+                return;
+            }
+        }
+        // Changes after shutdown are written through
+        appender.run();
+    }
+
+    private void runAppend() {
+        synchronized (this) {
+            if (!appendPending || closed) {
+                return;
+            }
+            appendPending = false;
+        }
+        appender.run();
+    }
+
+    /**
+     * Drops the pending write, because the file was just replaced as a whole
+     */
+    synchronized void discard() {
+        dirty = false;
+    }
+
+    private void run() {
+        synchronized (this) {
+            scheduled = false;
+            if (!dirty || closed) {
+                return;
+            }
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                // More changes came in; wait for the window to close again
+                scheduled = true;
+                executor.schedule(this::run, wait, TimeUnit.NANOSECONDS);
+                return;
+            }
+            dirty = false;
+        }
+        writer.run();
+    }
+
+    /**
+     * Stops the writer and saves any pending change before returning
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        executor.shutdown();
+        try {
+            // Let a write already in progress finish
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("[MyPermissions] Config writer did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        boolean append;
+        boolean pending;
+        synchronized (this) {
+            append = appendPending;
+            pending = dirty;
+            appendPending = false;
+            dirty = false;
+        }
+        if (append) {
+            appender.run();
+        }
+        if (pending) {
+            writer.run();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.mypermissions.config;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Stores users outside config.json, hashed by UUID into {@link #COUNT} shard files
+ * (users/00.json to users/ff.json). Saving only rewrites the shards whose users
+ * changed, so one player's change no longer rewrites every other player.
+ *
+ * Shards are loaded in parallel on virtual threads. There is no index: looking a
+ * user up by UUID reads one shard, by username or group reads them all.
+ */
+final class JsonStorage implements StorageBackend {
+
+    static final int COUNT = 256;
+
+    private static final Type USERS_TYPE = new TypeToken<Map<String, UserData>>() {}.getType();
+
+    private final Path folder;
+    private final Gson gson;
+
+    // Shards edited in the running batch, written once it ends; null outside a batch
+    private Map<Integer, Map<String, UserData>> pending;
+
+    /**
+     * @param gson Serializes the shard files
+     */
+    JsonStorage(Path dataFolder, Gson gson) {
+        this.folder = dataFolder.resolve("users");
+        this.gson = gson;
+    }
+
+    /**
+     * Whether users are stored in shards yet; older installs kept them in config.json
+     */
+    @Override
+    public boolean exists() {
+        return Files.isDirectory(folder);
+    }
+
+    @Override
+    public void archive() throws IOException {
+        if (exists()) {
+            Files.move(folder, folder.resolveSibling("users.migrated-" + System.currentTimeMillis()));
+        }
+    }
+
+    static int shardOf(String uuid) {
+        return uuid.hashCode() & (COUNT - 1);
+    }
+
+    private Path pathOf(int shard) {
+        return folder.resolve(String.format("%02x.json", shard));
+    }
+
+    /**
+     * Reads every shard
+     *
+     * @return Users by UUID
+     * @throws IOException If a shard can't be read or is corrupted
+     */
+    @Override
+    public Map<String, UserData> loadUsers() throws IOException {
+        Map<String, UserData> users = new HashMap<>();
+        if (!exists()) {
+            return users;
+        }
+
+        List<Future<Map<String, UserData>>> shards = new ArrayList<>(COUNT);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int shard = 0; shard < COUNT; shard++) {
+                Path path = pathOf(shard);
+                shards.add(executor.submit(() -> read(path)));
+            }
+            for (Future<Map<String, UserData>> shard : shards) {
+                users.putAll(shard.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to load user shard: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading user shards", e);
+        }
+        return users;
+    }
+
+    private Map<String, UserData> read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Map.of();
+        }
+        try {
+            Map<String, UserData> users = gson.fromJson(Files.readString(path), USERS_TYPE);
+            if (users == null) {
+                throw new IOException("Shard is empty: " + path.getFileName());
+            }
+            users.values().removeIf(Objects::isNull);
+            return users;
+        } catch (JsonParseException e) {
+            throw new IOException("Shard is corrupted: " + path.getFileName(), e);
+        }
+    }
+
+    @Override
+    public UserData loadUser(String uuid) throws IOException {
+        return read(pathOf(shardOf(uuid))).get(uuid);
+    }
+
+    @Override
+    public String findUserByUsername(String username) throws IOException {
+        for (Map.Entry<String, UserData> entry : loadUsers().entrySet()) {
+            if (entry.getValue().getUsername() != null && entry.getValue().getUsername().equalsIgnoreCase(username)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> usersInGroup(String group) throws IOException {
+        List<String> uuids = new ArrayList<>();
+        for (Map.Entry<String, UserData> entry : loadUsers().entrySet()) {
+            if (entry.getValue().getGroups().contains(group)) {
+                uuids.add(entry.getKey());
+            }
+        }
+        return uuids;
+    }
+
+    @Override
+    public void upsertUser(String uuid, UserData user) throws IOException {
+        int shard = shardOf(uuid);
+        Map<String, UserData> users = edit(shard);
+        users.put(uuid, user);
+        if (pending == null) {
+            writeShard(shard, users, true);
+        }
+    }
+
+    @Override
+    public void deleteUser(String uuid) throws IOException {
+        int shard = shardOf(uuid);
+        Map<String, UserData> users = edit(shard);
+        if (users.remove(uuid) != null && pending == null) {
+            writeShard(shard, users, true);
+        }
+    }
+
+    /**
+     * Gets a shard's users for editing; within a batch, each shard is read once
+     */
+    private Map<String, UserData> edit(int shard) throws IOException {
+        if (pending == null) {
+            return new TreeMap<>(read(pathOf(shard)));
+        }
+        Map<String, UserData> users = pending.get(shard);
+        if (users == null) {
+            users = new TreeMap<>(read(pathOf(shard)));
+            pending.put(shard, users);
+        }
+        return users;
+    }
+
+    /**
+     * Writes each shard the batch touched once, after all its edits
+     */
+    @Override
+    public void batch(boolean force, Batch work) throws IOException {
+        if (pending != null) {
+            work.run();
+            return;
+        }
+        pending = new TreeMap<>();
+        try {
+            work.run();
+            for (Map.Entry<Integer, Map<String, UserData>> shard : pending.entrySet()) {
+                writeShard(shard.getKey(), shard.getValue(), force);
+            }
+        } finally {
+            pending = null;
+        }
+    }
+
+    /**
+     * Rewrites every shard from the given users, without reading what they held
+     */
+    @Override
+    public void writeUsers(Map<String, UserData> users, boolean force) throws IOException {
+        Files.createDirectories(folder);
+
+        List<Map<String, UserData>> shards = new ArrayList<>(COUNT);
+        for (int shard = 0; shard < COUNT; shard++) {
+            shards.add(new TreeMap<>());
+        }
+        for (Map.Entry<String, UserData> entry : users.entrySet()) {
+            if (entry.getValue() != null) {
+                shards.get(shardOf(entry.getKey())).put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (int shard = 0; shard < COUNT; shard++) {
+            writeShard(shard, shards.get(shard), force);
+        }
+    }
+
+    private void writeShard(int shard, Map<String, UserData> users, boolean force) throws IOException {
+        Files.createDirectories(folder);
+        if (users.isEmpty()) {
+            Files.deleteIfExists(pathOf(shard));
+        } else {
+            ConfigManager.writeAtomically(pathOf(shard), gson.toJson(users, USERS_TYPE), force);
+        }
+    }
+}
@@ -1,11 +1,30 @@
 package com.mypermissions.config;
 
+import com.google.gson.annotations.SerializedName;
+
 import java.util.*;
 
+/**
+ * Permission configuration (config.json).
+ *
+ * Instances published by {@link ConfigManager} are frozen snapshots: their maps and lists
+ * are read-only and can be shared freely between threads. Changes are made on a draft
+ * through {@link ConfigManager#update}, which copies the snapshot, lets the caller edit it
+ * and publishes the result as the next snapshot.
+ */
 public class MyPermissionsConfig {
     private String defaultGroup = "default";
     private Map<String, GroupData> groups = new HashMap<>();
     private Map<String, UserData> users = new HashMap<>(); // UUID as String
+    private Settings settings = new Settings();
+
+    // Snapshot state, not serialized
+    private transient boolean frozen;
+    private transient SnapshotMap<List<String>> usernameIndex; // Lowercase username -> UUIDs
+
+    // Users and username index of the snapshot a draft was made from, until it is frozen
+    private transient SnapshotMap<UserData> baseUsers;
+    private transient SnapshotMap<List<String>> baseUsernameIndex;
 
     public MyPermissionsConfig() {
         // Create default groups
@@ -31,6 +50,7 @@ public class MyPermissionsConfig {
     }
 
     public void setDefaultGroup(String defaultGroup) {
+        ensureMutable(frozen);
         this.defaultGroup = defaultGroup;
     }
 
@@ -39,6 +59,7 @@ public class MyPermissionsConfig {
     }
 
     public void setGroups(Map<String, GroupData> groups) {
+        ensureMutable(frozen);
         this.groups = groups;
     }
 
@@ -47,11 +68,25 @@ public class MyPermissionsConfig {
     }
 
     public void setUsers(Map<String, UserData> users) {
+        ensureMutable(frozen);
         this.users = users;
+        this.baseUsers = null;
+        this.baseUsernameIndex = null;
+    }
+
+    public Settings getSettings() {
+        return settings;
     }
 
     // Helper method to search UUID by username
     public String getUuidByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        if (usernameIndex != null) {
+            List<String> uuids = usernameIndex.get(username.toLowerCase(Locale.ROOT));
+            return uuids != null ? uuids.get(0) : null;
+        }
         for (Map.Entry<String, UserData> entry : users.entrySet()) {
             if (entry.getValue().getUsername().equalsIgnoreCase(username)) {
                 return entry.getKey();
@@ -60,13 +95,294 @@ public class MyPermissionsConfig {
         return null;
     }
 
+    /**
+     * Checks whether a group inherits from another, directly or through its parents.
+     * Works on drafts too, so an update can refuse a parent edit that would create a cycle.
+     *
+     * @param group Group name
+     * @param ancestor Possible ancestor
+     * @return true if the group is or inherits from the ancestor
+     */
+    public boolean inheritsFrom(String group, String ancestor) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(group);
+        while (!pending.isEmpty()) {
+            String name = pending.poll();
+            if (name.equals(ancestor)) {
+                return true;
+            }
+            GroupData data = groups.get(name);
+            if (visited.add(name) && data != null) {
+                pending.addAll(data.getParents());
+            }
+        }
+        return false;
+    }
+
+    // ==================== Snapshots and Drafts ====================
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Gets the keys whose entries were created, edited or removed between two snapshots'
+     * maps, e.g. {@code changedKeys(before.getUsers(), after.getUsers())}.
+     * Copy-on-write gives every edited entry a new instance, so identity tells them apart;
+     * for the users of a snapshot and its draft, only the users the draft edited are looked at.
+     */
+    public static <V> Set<String> changedKeys(Map<String, V> before, Map<String, V> after) {
+        return SnapshotMap.changedKeys(before, after);
+    }
+
+    /**
+     * Creates a mutable draft of this config.
+     * The maps are copied (users only bucket by bucket, as they are edited), but groups
+     * and users are shared until edited through {@link #editGroup} / {@link #editUser}.
+     */
+    public MyPermissionsConfig copy() {
+        MyPermissionsConfig draft = new MyPermissionsConfig();
+        draft.defaultGroup = defaultGroup;
+        draft.groups = new HashMap<>(groups);
+        if (users instanceof SnapshotMap<UserData> snapshot && snapshot.isFrozen()) {
+            draft.users = snapshot.draft();
+            draft.baseUsers = snapshot;
+            draft.baseUsernameIndex = usernameIndex;
+        } else {
+            draft.users = new HashMap<>(users);
+        }
+        draft.settings = settings;
+        return draft;
+    }
+
+    /**
+     * Gets a group for editing, replacing a shared (frozen) instance with a private copy
+     *
+     * @param name Group name
+     * @return Editable group, or null if it doesn't exist
+     */
+    public GroupData editGroup(String name) {
+        ensureMutable(frozen);
+        GroupData group = groups.get(name);
+        if (group != null && group.frozen) {
+            group = group.copy();
+            groups.put(name, group);
+        }
+        return group;
+    }
+
+    /**
+     * Gets a user for editing, replacing a shared (frozen) instance with a private copy
+     *
+     * @param uuid User's UUID
+     * @return Editable user, or null if it doesn't exist
+     */
+    public UserData editUser(String uuid) {
+        ensureMutable(frozen);
+        UserData user = users.get(uuid);
+        if (user != null && user.frozen) {
+            user = user.copy();
+            users.put(uuid, user);
+        }
+        return user;
+    }
+
+    /**
+     * Gets a user for editing, creating it if it doesn't exist
+     *
+     * @param uuid User's UUID
+     * @return Editable user
+     */
+    public UserData editOrCreateUser(String uuid) {
+        UserData user = editUser(uuid);
+        if (user == null) {
+            user = new UserData();
+            users.put(uuid, user);
+        }
+        return user;
+    }
+
+    /**
+     * Makes this config read-only and builds its lookup indexes.
+     * Called by {@link ConfigManager} right before the config is published.
+     */
+    void freeze() {
+        if (frozen) {
+            return;
+        }
+
+        if (groups == null) {
+            groups = new HashMap<>();
+        }
+        if (users == null) {
+            users = new HashMap<>();
+        }
+        if (settings == null) {
+            settings = new Settings();
+        }
+
+        SnapshotMap<List<String>> index;
+        if (users instanceof SnapshotMap<UserData> draft && !draft.isFrozen()
+                && baseUsers != null && baseUsernameIndex != null) {
+            // Only the users this draft edited are new or renamed
+            index = baseUsernameIndex.draft();
+            for (String uuid : SnapshotMap.changedKeys(baseUsers, draft)) {
+                UserData before = baseUsers.get(uuid);
+                if (before != null) {
+                    unindex(index, before.getUsername(), uuid);
+                }
+                UserData user = draft.get(uuid);
+                if (user != null) {
+                    user.freeze();
+                    index(index, user.getUsername(), uuid);
+                }
+            }
+        } else {
+            if (!(users instanceof SnapshotMap<UserData> map) || map.isFrozen()) {
+                users = SnapshotMap.of(users);
+            }
+            index = SnapshotMap.of(null);
+            for (Map.Entry<String, UserData> entry : users.entrySet()) {
+                UserData user = entry.getValue();
+                if (user == null) {
+                    continue;
+                }
+                user.freeze();
+                index(index, user.getUsername(), entry.getKey());
+            }
+        }
+        for (GroupData group : groups.values()) {
+            if (group != null) {
+                group.freeze();
+            }
+        }
+
+        groups = Collections.unmodifiableMap(groups);
+        ((SnapshotMap<UserData>) users).freeze();
+        index.freeze();
+        usernameIndex = index;
+        baseUsers = null;
+        baseUsernameIndex = null;
+        frozen = true;
+    }
+
+    private static void index(SnapshotMap<List<String>> index, String username, String uuid) {
+        if (username == null) {
+            return;
+        }
+        // Lists are replaced, never edited, as older snapshots share them
+        index.merge(username.toLowerCase(Locale.ROOT), List.of(uuid), (uuids, added) -> {
+            List<String> merged = new ArrayList<>(uuids);
+            merged.add(uuid);
+            return List.copyOf(merged);
+        });
+    }
+
+    private static void unindex(SnapshotMap<List<String>> index, String username, String uuid) {
+        if (username == null) {
+            return;
+        }
+        String key = username.toLowerCase(Locale.ROOT);
+        List<String> uuids = index.get(key);
+        if (uuids == null || !uuids.contains(uuid)) {
+            return;
+        }
+        if (uuids.size() == 1) {
+            index.remove(key);
+        } else {
+            List<String> remaining = new ArrayList<>(uuids);
+            remaining.remove(uuid);
+            index.put(key, List.copyOf(remaining));
+        }
+    }
+
+    private static void ensureMutable(boolean frozen) {
+        if (frozen) {
+            throw new IllegalStateException("Config snapshot is read-only, edit it through ConfigManager.update");
+        }
+    }
+
+    private static List<String> freezeList(List<String> list) {
+        return list == null ? List.of() : Collections.unmodifiableList(list);
+    }
+
     // Inner classes
+
+    /**
+     * Plugin settings; edited by hand in config.json
+     */
+    public static class Settings {
+        private int cacheMaxEntries = 100_000; // Cached permission check results, across all players
+        private int threadCacheSize = 256; // Recent results kept by each server thread (0 disables)
+        private long saveDelayMillis = 1000; // Quiet time before changes are written to disk
+        private long saveMaxDelayMillis = 5000; // Longest a change waits to be written while changes keep coming
+        private FsyncPolicy fsync = FsyncPolicy.ALWAYS; // When writes are forced to the disk
+        private long fsyncIntervalMillis = 10_000; // Minimum time between forced writes with "interval"
+        private long journalCompactBytes = 1_048_576; // Journal size that triggers a config.json rewrite (0 disables the journal)
+        private StorageType storage = StorageType.JSON; // Where users are stored
+
+        /**
+         * Where users are stored (see {@link StorageBackend}); switching moves them over on the next load
+         */
+        public enum StorageType {
+            @SerializedName("json") JSON,
+            @SerializedName("sqlite") SQLITE
+        }
+
+        /**
+         * When a config write waits until the data actually reached the disk.
+         * The file is replaced atomically either way; skipping the wait only risks
+         * losing the latest changes (never the whole file) on a power loss.
+         */
+        public enum FsyncPolicy {
+            @SerializedName("always") ALWAYS,
+            @SerializedName("interval") INTERVAL,
+            @SerializedName("never") NEVER
+        }
+
+        public int getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public int getThreadCacheSize() {
+            return threadCacheSize;
+        }
+
+        public long getSaveDelayMillis() {
+            return saveDelayMillis;
+        }
+
+        public long getSaveMaxDelayMillis() {
+            return saveMaxDelayMillis;
+        }
+
+        public FsyncPolicy getFsync() {
+            // Unknown values in the file come in as null
+            return fsync != null ? fsync : FsyncPolicy.ALWAYS;
+        }
+
+        public long getFsyncIntervalMillis() {
+            return fsyncIntervalMillis;
+        }
+
+        public long getJournalCompactBytes() {
+            return journalCompactBytes;
+        }
+
+        public StorageType getStorage() {
+            // Unknown values in the file come in as null
+            return storage != null ? storage : StorageType.JSON;
+        }
+    }
+
     public static class GroupData {
         private List<String> permissions;
         private List<String> parents;
         private String prefix;
         private String suffix;
         private int priority; // Group weight (higher = more important)
+        private transient boolean frozen;
 
         public GroupData() {
             this.permissions = new ArrayList<>();
@@ -84,12 +400,25 @@ public class MyPermissionsConfig {
             this.priority = priority;
         }
 
+        GroupData copy() {
+            return new GroupData(new ArrayList<>(permissions), new ArrayList<>(parents), prefix, suffix, priority);
+        }
+
+        void freeze() {
+            if (!frozen) {
+                permissions = freezeList(permissions);
+                parents = freezeList(parents);
+                frozen = true;
+            }
+        }
+
         // Getters and Setters
         public List<String> getPermissions() {
             return permissions;
         }
 
         public void setPermissions(List<String> permissions) {
+            ensureMutable(frozen);
             this.permissions = permissions;
         }
 
@@ -98,6 +427,7 @@ public class MyPermissionsConfig {
         }
 
         public void setParents(List<String> parents) {
+            ensureMutable(frozen);
             this.parents = parents;
         }
 
@@ -106,6 +436,7 @@ public class MyPermissionsConfig {
         }
 
         public void setPrefix(String prefix) {
+            ensureMutable(frozen);
             this.prefix = prefix;
         }
 
@@ -114,6 +445,7 @@ public class MyPermissionsConfig {
         }
 
         public void setSuffix(String suffix) {
+            ensureMutable(frozen);
             this.suffix = suffix;
         }
 
@@ -122,6 +454,7 @@ public class MyPermissionsConfig {
         }
 
         public void setPriority(int priority) {
+            ensureMutable(frozen);
             this.priority = priority;
         }
     }
@@ -130,6 +463,7 @@ public class MyPermissionsConfig {
         private String username;
         private List<String> groups;
         private List<String> permissions;
+        private transient boolean frozen;
 
         public UserData() {
             this.username = "";
@@ -143,12 +477,25 @@ public class MyPermissionsConfig {
             this.permissions = permissions;
         }
 
+        UserData copy() {
+            return new UserData(username, new ArrayList<>(groups), new ArrayList<>(permissions));
+        }
+
+        void freeze() {
+            if (!frozen) {
+                groups = freezeList(groups);
+                permissions = freezeList(permissions);
+                frozen = true;
+            }
+        }
+
         // Getters and Setters
         public String getUsername() {
             return username;
         }
 
         public void setUsername(String username) {
+            ensureMutable(frozen);
             this.username = username;
         }
 
@@ -157,6 +504,7 @@ public class MyPermissionsConfig {
         }
 
         public void setGroups(List<String> groups) {
+            ensureMutable(frozen);
             this.groups = groups;
         }
 
@@ -165,6 +513,7 @@ public class MyPermissionsConfig {
         }
 
         public void setPermissions(List<String> permissions) {
+            ensureMutable(frozen);
             this.permissions = permissions;
         }
     }
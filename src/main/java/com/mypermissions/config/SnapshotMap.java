@@ -0,0 +1,272 @@
+package com.mypermissions.config;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Map of a config snapshot that drafts can copy in constant time.
+ *
+ * Entries are split into a fixed number of buckets by key hash. A draft shares every
+ * bucket of the snapshot it was made from and copies a bucket only when it first
+ * edits it, so editing one user copies a few hundred entries, not all of them. The
+ * draft also records the keys it put or removed; together with bucket identity that
+ * tells which keys differ between two snapshots without scanning the whole map.
+ *
+ * Values are compared by identity, like everything else about snapshots: copy-on-write
+ * gives every edited entry a new instance.
+ */
+final class SnapshotMap<V> extends AbstractMap<String, V> {
+
+    private static final int BUCKETS = 256;
+
+    // Identifies frozen maps, so a draft knows which snapshot it was made from
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final HashMap<String, V>[] buckets;
+    private final boolean[] owned;
+    private final long baseId;
+    private final Set<String> changed;
+    private int size;
+    private long id;
+    private boolean frozen;
+
+    private SnapshotMap(HashMap<String, V>[] buckets, boolean owned, long baseId, Set<String> changed, int size) {
+        this.buckets = buckets;
+        this.owned = new boolean[BUCKETS];
+        if (owned) {
+            Arrays.fill(this.owned, true);
+        }
+        this.baseId = baseId;
+        this.changed = changed;
+        this.size = size;
+    }
+
+    /**
+     * Creates a mutable map holding a copy of the given entries
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <V> SnapshotMap<V> of(Map<String, V> entries) {
+        HashMap<String, V>[] buckets = new HashMap[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new HashMap<>();
+        }
+        SnapshotMap<V> map = new SnapshotMap<>(buckets, true, -1, null, 0);
+        if (entries != null) {
+            map.putAll(entries);
+        }
+        return map;
+    }
+
+    /**
+     * Creates a mutable draft sharing every bucket of this frozen map
+     */
+    SnapshotMap<V> draft() {
+        if (!frozen) {
+            throw new IllegalStateException("Only a frozen map can be drafted");
+        }
+        return new SnapshotMap<>(buckets.clone(), false, id, new HashSet<>(), size);
+    }
+
+    /**
+     * Makes this map read-only
+     */
+    void freeze() {
+        if (!frozen) {
+            id = IDS.incrementAndGet();
+            frozen = true;
+        }
+    }
+
+    boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Gets the keys whose values differ between two maps, by identity.
+     * Between snapshot maps only the keys a draft edited, or at worst the buckets it
+     * copied, are looked at; any other maps are compared entry by entry.
+     */
+    static <V> Set<String> changedKeys(Map<String, V> before, Map<String, V> after) {
+        Set<String> changed = new HashSet<>();
+        if (before instanceof SnapshotMap<V> from && after instanceof SnapshotMap<V> to) {
+            if (from.frozen && to.baseId == from.id && to.changed != null) {
+                for (String key : to.changed) {
+                    if (from.get(key) != to.get(key)) {
+                        changed.add(key);
+                    }
+                }
+                return changed;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                if (from.buckets[i] != to.buckets[i]) {
+                    addChanges(changed, from.buckets[i], to.buckets[i]);
+                }
+            }
+            return changed;
+        }
+        addChanges(changed, before, after);
+        return changed;
+    }
+
+    private static <V> void addChanges(Set<String> changed, Map<String, V> before, Map<String, V> after) {
+        for (Map.Entry<String, V> entry : after.entrySet()) {
+            if (before.get(entry.getKey()) != entry.getValue()) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+    }
+
+    private static int indexOf(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (BUCKETS - 1);
+    }
+
+    /**
+     * Gets a bucket for editing, copying it first if it is still shared
+     */
+    private HashMap<String, V> own(int index) {
+        if (frozen) {
+            throw new UnsupportedOperationException("Config snapshot is read-only, edit it through ConfigManager.update");
+        }
+        if (!owned[index]) {
+            buckets[index] = new HashMap<>(buckets[index]);
+            owned[index] = true;
+        }
+        return buckets[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && buckets[indexOf(key)].containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof String ? buckets[indexOf(key)].get(key) : null;
+    }
+
+    @Override
+    public V put(String key, V value) {
+        int index = indexOf(key);
+        HashMap<String, V> bucket = own(index);
+        if (!bucket.containsKey(key)) {
+            size++;
+        }
+        if (changed != null) {
+            changed.add(key);
+        }
+        return bucket.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int index = indexOf(key);
+        if (!buckets[index].containsKey(key)) {
+            return null;
+        }
+        HashMap<String, V> bucket = own(index);
+        size--;
+        if (changed != null) {
+            changed.add((String) key);
+        }
+        return bucket.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (!buckets[i].isEmpty()) {
+                if (changed != null) {
+                    changed.addAll(buckets[i].keySet());
+                }
+                own(i).clear();
+            }
+        }
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Walks the buckets in order. Entries are read-only; removing through the
+     * iterator copies a shared bucket and keeps walking the original.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, V>> {
+        private int index = -1;
+        private HashMap<String, V> bucket;
+        private Iterator<Map.Entry<String, V>> entries = Collections.emptyIterator();
+        private Map.Entry<String, V> last;
+
+        @Override
+        public boolean hasNext() {
+            while (!entries.hasNext() && index + 1 < BUCKETS) {
+                index++;
+                bucket = buckets[index];
+                entries = bucket.entrySet().iterator();
+            }
+            return entries.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, V> entry = entries.next();
+            last = new AbstractMap.SimpleImmutableEntry<>(entry);
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (owned[index] && buckets[index] == bucket && !frozen) {
+                entries.remove();
+                size--;
+                if (changed != null) {
+                    changed.add(last.getKey());
+                }
+            } else {
+                SnapshotMap.this.remove(last.getKey());
+            }
+            last = null;
+        }
+    }
+}
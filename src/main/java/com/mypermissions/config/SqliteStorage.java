@@ -0,0 +1,317 @@
+package com.mypermissions.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Stores users in an embedded SQLite database (users.db), one row per user with
+ * indexed columns for the lowercased username and, in a side table, for each
+ * group the user has; lookups by username or group go through those indexes, and
+ * the database can be queried directly with SQLite tools.
+ * Writes only touch the rows of changed users, each batch in a single transaction.
+ *
+ * The row's data column holds the user as JSON, in the same form as config.json.
+ */
+final class SqliteStorage implements StorageBackend {
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private static final String SCHEMA = """
+        CREATE TABLE IF NOT EXISTS users (
+            uuid TEXT PRIMARY KEY,
+            username_lower TEXT,
+            data TEXT NOT NULL
+        );
+        CREATE INDEX IF NOT EXISTS users_by_username ON users (username_lower);
+        CREATE TABLE IF NOT EXISTS user_groups (
+            uuid TEXT NOT NULL,
+            group_name TEXT NOT NULL,
+            PRIMARY KEY (uuid, group_name)
+        );
+        CREATE INDEX IF NOT EXISTS user_groups_by_group ON user_groups (group_name);
+        """;
+
+    // Lookups answered by the indexes above
+    static final String FIND_BY_USERNAME = "SELECT uuid FROM users WHERE username_lower = ? LIMIT 1";
+    static final String USERS_IN_GROUP = "SELECT uuid FROM user_groups WHERE group_name = ?";
+
+    private final Path path;
+    private Connection connection;
+    private boolean schemaReady;
+    // Whether a batch's transaction is open, so single writes join it
+    private boolean inBatch;
+
+    SqliteStorage(Path dataFolder) {
+        this.path = dataFolder.resolve("users.db");
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + path.toAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Gets the connection, creating the tables first if needed
+     */
+    private Connection schema() throws SQLException {
+        Connection connection = connection();
+        if (!schemaReady) {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA.split(";")) {
+                    if (!sql.isBlank()) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+            schemaReady = true;
+        }
+        return connection;
+    }
+
+    /**
+     * Whether users.db has its tables; a database holding no users yet still counts
+     */
+    @Override
+    public synchronized boolean exists() {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (Statement statement = connection().createStatement();
+             ResultSet result = statement.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'users'")) {
+            return result.next();
+        } catch (SQLException e) {
+            System.err.println("[MyPermissions] Failed to open " + path.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void archive() throws IOException {
+        close();
+        String suffix = ".migrated-" + System.currentTimeMillis();
+        for (String extension : new String[]{"", "-wal", "-shm"}) {
+            Path file = path.resolveSibling(path.getFileName() + extension);
+            if (Files.exists(file)) {
+                Files.move(file, file.resolveSibling(path.getFileName() + suffix + extension));
+            }
+        }
+    }
+
+    @Override
+    public synchronized Map<String, UserData> loadUsers() throws IOException {
+        Map<String, UserData> users = new HashMap<>();
+        try (Statement statement = schema().createStatement();
+             ResultSet result = statement.executeQuery("SELECT uuid, data FROM users")) {
+            while (result.next()) {
+                users.put(result.getString(1), parse(result.getString(2)));
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to load users: " + e.getMessage(), e);
+        }
+        return users;
+    }
+
+    @Override
+    public synchronized UserData loadUser(String uuid) throws IOException {
+        try (PreparedStatement statement = schema().prepareStatement("SELECT data FROM users WHERE uuid = ?")) {
+            statement.setString(1, uuid);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? parse(result.getString(1)) : null;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to load user " + uuid + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized String findUserByUsername(String username) throws IOException {
+        try (PreparedStatement statement = schema().prepareStatement(FIND_BY_USERNAME)) {
+            statement.setString(1, username.toLowerCase(Locale.ROOT));
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to find user " + username + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized List<String> usersInGroup(String group) throws IOException {
+        List<String> uuids = new ArrayList<>();
+        try (PreparedStatement statement = schema().prepareStatement(USERS_IN_GROUP)) {
+            statement.setString(1, group);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    uuids.add(result.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to list users of group " + group + ": " + e.getMessage(), e);
+        }
+        return uuids;
+    }
+
+    @Override
+    public synchronized void upsertUser(String uuid, UserData user) throws IOException {
+        write(connection -> upsert(connection, Map.of(uuid, user)));
+    }
+
+    @Override
+    public synchronized void deleteUser(String uuid) throws IOException {
+        write(connection -> delete(connection, uuid));
+    }
+
+    /**
+     * Runs the work's upserts and deletes in one transaction
+     */
+    @Override
+    public synchronized void batch(boolean force, Batch work) throws IOException {
+        if (inBatch) {
+            work.run();
+            return;
+        }
+        inTransaction(force, connection -> {
+            inBatch = true;
+            try {
+                work.run();
+            } catch (IOException e) {
+                throw new SQLException(e.getMessage(), e);
+            } finally {
+                inBatch = false;
+            }
+        });
+    }
+
+    @Override
+    public synchronized void writeUsers(Map<String, UserData> users, boolean force) throws IOException {
+        inTransaction(force, connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DELETE FROM user_groups");
+                statement.execute("DELETE FROM users");
+            }
+            upsert(connection, users);
+        });
+    }
+
+    /**
+     * Runs a single write in the open batch, or in a transaction of its own
+     */
+    private void write(Work work) throws IOException {
+        if (!inBatch) {
+            inTransaction(true, work);
+            return;
+        }
+        try {
+            work.run(schema());
+        } catch (SQLException e) {
+            throw new IOException("Failed to write users: " + e.getMessage(), e);
+        }
+    }
+
+    private interface Work {
+        void run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Runs work in one transaction
+     *
+     * @param force Whether the commit waits until the data reached the disk
+     */
+    private void inTransaction(boolean force, Work work) throws IOException {
+        try {
+            Connection connection = schema();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(force ? "PRAGMA synchronous=FULL" : "PRAGMA synchronous=NORMAL");
+            }
+            connection.setAutoCommit(false);
+            try {
+                work.run(connection);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to write users: " + e.getMessage(), e);
+        }
+    }
+
+    private static void upsert(Connection connection, Map<String, UserData> users) throws SQLException {
+        try (PreparedStatement upsert = connection.prepareStatement(
+                 "INSERT INTO users (uuid, username_lower, data) VALUES (?, ?, ?) "
+                     + "ON CONFLICT (uuid) DO UPDATE SET username_lower = excluded.username_lower, data = excluded.data");
+             PreparedStatement clearGroups = connection.prepareStatement("DELETE FROM user_groups WHERE uuid = ?");
+             PreparedStatement addGroup = connection.prepareStatement(
+                 "INSERT OR IGNORE INTO user_groups (uuid, group_name) VALUES (?, ?)")) {
+            for (Map.Entry<String, UserData> entry : users.entrySet()) {
+                String uuid = entry.getKey();
+                UserData user = entry.getValue();
+                if (user == null) {
+                    continue;
+                }
+
+                upsert.setString(1, uuid);
+                upsert.setString(2, user.getUsername() != null ? user.getUsername().toLowerCase(Locale.ROOT) : null);
+                upsert.setString(3, GSON.toJson(user));
+                upsert.addBatch();
+
+                clearGroups.setString(1, uuid);
+                clearGroups.addBatch();
+                for (String group : user.getGroups()) {
+                    addGroup.setString(1, uuid);
+                    addGroup.setString(2, group);
+                    addGroup.addBatch();
+                }
+            }
+            upsert.executeBatch();
+            clearGroups.executeBatch();
+            addGroup.executeBatch();
+        }
+    }
+
+    private static void delete(Connection connection, String uuid) throws SQLException {
+        try (PreparedStatement groups = connection.prepareStatement("DELETE FROM user_groups WHERE uuid = ?");
+             PreparedStatement user = connection.prepareStatement("DELETE FROM users WHERE uuid = ?")) {
+            groups.setString(1, uuid);
+            groups.executeUpdate();
+            user.setString(1, uuid);
+            user.executeUpdate();
+        }
+    }
+
+    private UserData parse(String json) throws SQLException {
+        try {
+            return GSON.fromJson(json, UserData.class);
+        } catch (JsonParseException e) {
+            throw new SQLException("Corrupted user data", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new IOException("Failed to close " + path.getFileName() + ": " + e.getMessage(), e);
+            } finally {
+                connection = null;
+                schemaReady = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.mypermissions.config;
+
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where users are stored, picked by the "storage" setting: JSON shard files
+ * ({@link JsonStorage}) or an embedded SQLite database ({@link SqliteStorage}).
+ *
+ * config.json always keeps the default group, groups and settings: it is read first,
+ * since the settings pick the backend, and it is the file admins edit by hand. Group
+ * changes go through the journal (see {@link ConfigJournal}), so a backend only
+ * stores users; the groups they have are answered by {@link #usersInGroup}.
+ *
+ * {@link ConfigManager} loads every user on startup and, as each change is saved,
+ * upserts or deletes the users it touched, so the lookups here answer from what was
+ * last saved; changes must go through {@link ConfigManager#update}. Calls are never
+ * made concurrently.
+ */
+public interface StorageBackend extends Closeable {
+
+    /**
+     * Whether this backend holds any data yet; if not, users are migrated into it
+     */
+    boolean exists();
+
+    /**
+     * Moves this backend's data aside (keeping it on disk) once every user was moved
+     * to another backend, so it no longer counts as existing
+     */
+    void archive() throws IOException;
+
+    /**
+     * Loads every user
+     *
+     * @return Users by UUID
+     */
+    Map<String, UserData> loadUsers() throws IOException;
+
+    /**
+     * Loads one user
+     *
+     * @return The user's data, or null if they are not stored
+     */
+    UserData loadUser(String uuid) throws IOException;
+
+    /**
+     * Finds a user by username, ignoring case
+     *
+     * @return The user's UUID, or null if nobody has that name
+     */
+    String findUserByUsername(String username) throws IOException;
+
+    /**
+     * Lists the users that have a group assigned directly
+     *
+     * @return UUIDs of those users
+     */
+    List<String> usersInGroup(String group) throws IOException;
+
+    /**
+     * Stores a user, replacing what was stored for them
+     */
+    void upsertUser(String uuid, UserData user) throws IOException;
+
+    /**
+     * Removes a user
+     */
+    void deleteUser(String uuid) throws IOException;
+
+    /**
+     * Upserts and deletes made by the work are written together: in one transaction,
+     * or one write per file they touch
+     *
+     * @param force Whether to wait until the data reached the disk
+     */
+    default void batch(boolean force, Batch work) throws IOException {
+        work.run();
+    }
+
+    /**
+     * Replaces every stored user
+     *
+     * @param users Users to store
+     * @param force Whether to wait until the data reached the disk
+     */
+    default void writeUsers(Map<String, UserData> users, boolean force) throws IOException {
+        Map<String, UserData> stored = loadUsers();
+        batch(force, () -> {
+            for (String uuid : stored.keySet()) {
+                if (!users.containsKey(uuid)) {
+                    deleteUser(uuid);
+                }
+            }
+            for (Map.Entry<String, UserData> entry : users.entrySet()) {
+                if (entry.getValue() != null) {
+                    upsertUser(entry.getKey(), entry.getValue());
+                }
+            }
+        });
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Writes made in one {@link #batch}
+     */
+    @FunctionalInterface
+    interface Batch {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,157 @@
+package com.mypermissions.listener;
+
+import com.hypixel.hytale.server.core.Message;
+
+import javax.annotation.Nonnull;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A prefix or suffix with its color codes already parsed into styled segments,
+ * so formatting a chat message only assembles them.
+ *
+ * Supported codes:
+ * &0 = Black, &1 = Dark Blue, &2 = Dark Green, &3 = Dark Cyan
+ * &4 = Dark Red, &5 = Purple, &6 = Gold, &7 = Gray
+ * &8 = Dark Gray, &9 = Blue, &a = Green, &b = Cyan
+ * &c = Red, &d = Pink, &e = Yellow, &f = White
+ * &#RRGGBB = Any hex color
+ * &l = Bold, &o = Italic, &r = Reset
+ */
+final class ColorTemplate {
+
+    static final ColorTemplate EMPTY = new ColorTemplate(List.of());
+
+    // Colors of &0 to &f, shared by every template
+    private static final Color[] COLORS = {
+        new Color(0, 0, 0),         // Black
+        new Color(0, 0, 170),       // Dark Blue
+        new Color(0, 170, 0),       // Dark Green
+        new Color(0, 170, 170),     // Dark Cyan
+        new Color(170, 0, 0),       // Dark Red
+        new Color(170, 0, 170),     // Purple
+        new Color(255, 170, 0),     // Gold
+        new Color(170, 170, 170),   // Gray
+        new Color(85, 85, 85),      // Dark Gray
+        new Color(85, 85, 255),     // Blue
+        new Color(85, 255, 85),     // Green
+        new Color(85, 255, 255),    // Cyan
+        new Color(255, 85, 85),     // Red
+        new Color(255, 85, 255),    // Pink
+        new Color(255, 255, 85),    // Yellow
+        new Color(255, 255, 255)    // White
+    };
+
+    private record Segment(String text, Color color, boolean bold, boolean italic) {
+    }
+
+    private final List<Segment> segments;
+
+    private ColorTemplate(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Parses a prefix or suffix; unknown codes are kept as plain text
+     */
+    static ColorTemplate compile(String text) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        Color color = null;
+        boolean bold = false;
+        boolean italic = false;
+        StringBuilder current = new StringBuilder();
+
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '&' && i + 1 < text.length()) {
+                char code = Character.toLowerCase(text.charAt(i + 1));
+                int length = 2;
+                Color nextColor = color;
+                boolean nextBold = bold;
+                boolean nextItalic = italic;
+
+                int digit = hexValue(code);
+                if (digit >= 0) {
+                    nextColor = COLORS[digit];
+                } else if (code == '#' && isHex(text, i + 2)) {
+                    nextColor = new Color(Integer.parseInt(text, i + 2, i + 8, 16));
+                    length = 8;
+                } else if (code == 'l') {
+                    nextBold = true;
+                } else if (code == 'o') {
+                    nextItalic = true;
+                } else if (code == 'r') {
+                    nextColor = null;
+                    nextBold = false;
+                    nextItalic = false;
+                } else {
+                    length = 0;
+                }
+
+                if (length > 0) {
+                    // Flush the text so far with the formatting it was written in
+                    if (current.length() > 0) {
+                        segments.add(new Segment(current.toString(), color, bold, italic));
+                        current.setLength(0);
+                    }
+                    color = nextColor;
+                    bold = nextBold;
+                    italic = nextItalic;
+                    i += length;
+                    continue;
+                }
+            }
+
+            current.append(c);
+            i++;
+        }
+
+        if (current.length() > 0) {
+            segments.add(new Segment(current.toString(), color, bold, italic));
+        }
+        return segments.isEmpty() ? EMPTY : new ColorTemplate(List.copyOf(segments));
+    }
+
+    private static boolean isHex(String text, int start) {
+        if (start + 6 > text.length()) {
+            return false;
+        }
+        for (int i = start; i < start + 6; i++) {
+            if (hexValue(text.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Character.digit would also accept non-ASCII digits
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Appends the styled segments to a message
+     */
+    void appendTo(@Nonnull Message message) {
+        for (Segment segment : segments) {
+            Message part = Message.raw(segment.text());
+            if (segment.color() != null) part.color(segment.color());
+            if (segment.bold()) part.bold(true);
+            if (segment.italic()) part.italic(true);
+            message.insert(part);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.mypermissions.listener;
 import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.event.events.player.AddPlayerToWorldEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.mypermissions.Main;
@@ -17,6 +18,21 @@ public class PlayerListener {
     public static void register(@Nonnull JavaPlugin plugin) {
         // Register listener for when player joins the world
         plugin.getEventRegistry().registerGlobal(AddPlayerToWorldEvent.class, PlayerListener::onPlayerJoin);
+        // Register listener for when player leaves the server
+        plugin.getEventRegistry().registerGlobal(PlayerDisconnectEvent.class, PlayerListener::onPlayerDisconnect);
+    }
+
+    private static void onPlayerDisconnect(@Nonnull PlayerDisconnectEvent event) {
+        try {
+            PlayerRef playerRef = event.getPlayerRef();
+            if (playerRef == null) return;
+
+            // Drop the chat display and ruleset link kept for the player
+            Main.getPermissionManager().forgetPlayer(playerRef.getUuid());
+        } catch (Exception e) {
+            LOGGER.at(Level.SEVERE).log("Error handling PlayerDisconnectEvent: " + e.getMessage());
+            e.printStackTrace();
+        }
     }
 
     private static void onPlayerJoin(@Nonnull AddPlayerToWorldEvent event) {
@@ -37,16 +53,15 @@ public class PlayerListener {
             if (userData == null || userData.getGroups().isEmpty()) {
                 String defaultGroup = Main.getConfig().getDefaultGroup();
                 
-                // Add to default group
-                Main.getPermissionManager().addUserToGroup(uuid, defaultGroup);
-                
-                // Update username
-                userData = Main.getConfig().getUsers().get(uuid);
-                if (userData != null) {
-                    userData.setUsername(username);
-                }
-                
-                Main.getConfigManager().save();
+                // Add to default group and update username in a single change
+                Main.getConfigManager().update(config -> {
+                    MyPermissionsConfig.UserData user = config.editOrCreateUser(uuid);
+                    if (config.getGroups().containsKey(defaultGroup) && !user.getGroups().contains(defaultGroup)) {
+                        user.getGroups().add(defaultGroup);
+                    }
+                    user.setUsername(username);
+                    return true;
+                });
                 
                 // Log to console
                 LOGGER.at(Level.INFO).log(
@@ -55,11 +70,20 @@ public class PlayerListener {
             } else {
                 // Update username if changed
                 if (!username.equals(userData.getUsername())) {
-                    userData.setUsername(username);
-                    Main.getConfigManager().save();
+                    Main.getConfigManager().update(config -> {
+                        MyPermissionsConfig.UserData user = config.editUser(uuid);
+                        if (user == null) {
+                            return false;
+                        }
+                        user.setUsername(username);
+                        return true;
+                    });
                     LOGGER.at(Level.INFO).log("Updated username for " + uuid + " to " + username);
                 }
             }
+
+            // Resolve the chat display now rather than on the first message
+            Main.getPermissionManager().getDisplayProfile(uuid);
             
         } catch (Exception e) {
             LOGGER.at(Level.SEVERE).log("Error handling AddPlayerToWorldEvent: " + e.getMessage());
@@ -0,0 +1,175 @@
+package com.mypermissions.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled, immutable form of a single permission list (a group's or a user's).
+ * Gives the same answers as scanning the raw list, in the same order:
+ * 1. Exact negated permission (-permission.node)
+ * 2. Exact permission
+ * 3. Full wildcard (*)
+ * 4. First wildcard rule in list order (permission.* or permission.*.node)
+ */
+final class CompiledPermissions {
+
+    static final CompiledPermissions EMPTY = compile(null);
+
+    private final List<String> source;
+    private final PermissionTrie trie;
+    private final boolean fullWildcard;
+    private final WildcardAutomaton midWildcards;
+    private final boolean hasRules;
+    private final boolean hasNegations;
+
+    private CompiledPermissions(List<String> source, PermissionTrie trie, boolean fullWildcard, WildcardAutomaton midWildcards,
+                                boolean hasRules, boolean hasNegations) {
+        this.source = source;
+        this.trie = trie;
+        this.fullWildcard = fullWildcard;
+        this.midWildcards = midWildcards;
+        this.hasRules = hasRules;
+        this.hasNegations = hasNegations;
+    }
+
+    /**
+     * Checks whether the list grants '*'
+     */
+    boolean grantsAll() {
+        return fullWildcard;
+    }
+
+    /**
+     * Checks whether the list can answer any node at all
+     */
+    boolean hasRules() {
+        return hasRules;
+    }
+
+    /**
+     * Checks whether the list negates anything (-permission.node)
+     */
+    boolean hasNegations() {
+        return hasNegations;
+    }
+
+    /**
+     * Checks whether this was compiled from an equal permission list,
+     * so unchanged lists can keep their compiled form across rebuilds
+     *
+     * @param permissions Permission list (may be null)
+     * @return true if recompiling the list would give the same result
+     */
+    boolean isCompiledFrom(List<String> permissions) {
+        return permissions == null ? source.isEmpty() : source.equals(permissions);
+    }
+
+    /**
+     * Compiles a permission list
+     *
+     * @param permissions Permission list (may be null)
+     * @return Compiled permissions
+     */
+    static CompiledPermissions compile(List<String> permissions) {
+        PermissionTrie.Builder trie = new PermissionTrie.Builder();
+        boolean fullWildcard = false;
+        boolean hasRules = false;
+        boolean hasNegations = false;
+        WildcardAutomaton.Builder midWildcards = new WildcardAutomaton.Builder();
+
+        if (permissions != null) {
+            for (int index = 0; index < permissions.size(); index++) {
+                String permission = permissions.get(index);
+                if (permission == null) {
+                    continue;
+                }
+
+                // Exact entries are matched literally, even when they contain '*'
+                trie.addExact(permission, false);
+
+                boolean isNegation = permission.startsWith("-");
+                hasRules = true;
+                hasNegations |= isNegation;
+                String permNode = isNegation ? permission.substring(1) : permission;
+                if (isNegation) {
+                    trie.addExact(permNode, true);
+                }
+
+                if ("*".equals(permission)) {
+                    fullWildcard = true;
+                }
+
+                if (!permNode.contains("*")) {
+                    continue;
+                }
+
+                // Partial wildcard (e.g., "mypermissions.*" covers "mypermissions.admin")
+                boolean trailing = permNode.endsWith(".*");
+                String prefix = trailing ? permNode.substring(0, permNode.length() - 2) : null;
+                if (trailing) {
+                    trie.addWildcard(prefix, index, isNegation);
+                }
+
+                // Wildcard in the middle (e.g., "mypermissions.*.admin"); a plain trailing
+                // wildcard is fully covered by the trie
+                if (!trailing || prefix.contains("*")) {
+                    midWildcards.add(permNode, (index << 1) | (isNegation ? 1 : 0));
+                }
+            }
+        }
+
+        return new CompiledPermissions(
+            permissions == null ? List.of() : Collections.unmodifiableList(new ArrayList<>(permissions)),
+            trie.build(),
+            fullWildcard,
+            midWildcards.build(),
+            hasRules,
+            hasNegations
+        );
+    }
+
+    /**
+     * Checks a node against the compiled list
+     *
+     * @param node Permission node to search for
+     * @return true if allowed, false if denied, null if not found
+     */
+    Boolean check(String node) {
+        return check(trie.match(node), node);
+    }
+
+    /**
+     * Checks an already split node against the compiled list
+     *
+     * @param node Permission node handle
+     * @return true if allowed, false if denied, null if not found
+     */
+    Boolean check(PermissionNode node) {
+        return check(trie.match(node), node.name());
+    }
+
+    private Boolean check(long match, String node) {
+        switch (PermissionTrie.exactState(match)) {
+            case PermissionTrie.EXACT_DENY -> { return false; }
+            case PermissionTrie.EXACT_GRANT -> { return true; }
+            default -> { }
+        }
+
+        if (fullWildcard) {
+            return true;
+        }
+
+        // Trailing wildcards come from the trie, the rest from one automaton pass;
+        // whichever rule appears first in the list wins
+        int best = PermissionTrie.wildcardRule(match);
+        if (!midWildcards.isEmpty()) {
+            best = Math.min(best, midWildcards.match(node));
+        }
+
+        if (best == PermissionTrie.NO_MATCH) {
+            return null;
+        }
+        return (best & 1) == 0;
+    }
+}
@@ -0,0 +1,77 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.MyPermissionsConfig;
+import com.mypermissions.config.MyPermissionsConfig.GroupData;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.util.List;
+
+/**
+ * How a user is shown in chat: their primary (highest priority) group and the prefix
+ * and suffix it gives them. A group without a prefix or suffix falls back on the
+ * default group's.
+ *
+ * @param primaryGroup Highest priority group the user has, or null if none exists
+ * @param prefix Prefix, never null
+ * @param suffix Suffix, never null
+ */
+public record DisplayProfile(String primaryGroup, String prefix, String suffix) {
+
+    /**
+     * Resolves a user's profile from a snapshot
+     *
+     * @param uuid User's UUID
+     * @param config Snapshot to resolve against
+     */
+    static DisplayProfile of(String uuid, MyPermissionsConfig config) {
+        UserData userData = config.getUsers().get(uuid);
+        String primaryGroup = userData != null ? getHighestPriorityGroup(userData.getGroups(), config) : null;
+        GroupData group = primaryGroup != null ? config.getGroups().get(primaryGroup) : null;
+        GroupData defaultGroup = config.getGroups().get(config.getDefaultGroup());
+
+        String prefix = group != null && group.getPrefix() != null && !group.getPrefix().isEmpty()
+            ? group.getPrefix()
+            : defaultGroup != null && defaultGroup.getPrefix() != null ? defaultGroup.getPrefix() : "";
+        String suffix = group != null && group.getSuffix() != null && !group.getSuffix().isEmpty()
+            ? group.getSuffix()
+            : defaultGroup != null && defaultGroup.getSuffix() != null ? defaultGroup.getSuffix() : "";
+        return new DisplayProfile(primaryGroup, prefix, suffix);
+    }
+
+    /**
+     * Tells whether a group edit can change anyone's profile
+     */
+    static boolean affects(GroupData before, GroupData after) {
+        if (before == null || after == null) {
+            return before != after;
+        }
+        return before.getPriority() != after.getPriority()
+            || !String.valueOf(before.getPrefix()).equals(String.valueOf(after.getPrefix()))
+            || !String.valueOf(before.getSuffix()).equals(String.valueOf(after.getSuffix()));
+    }
+
+    /**
+     * Gets the highest priority group from a list of groups
+     *
+     * @param groups List of group names
+     * @param config Current configuration
+     * @return Name of the highest priority group, or null if none exist
+     */
+    private static String getHighestPriorityGroup(List<String> groups, MyPermissionsConfig config) {
+        String highestGroup = null;
+        int highestPriority = Integer.MIN_VALUE;
+
+        for (String groupName : groups) {
+            GroupData groupData = config.getGroups().get(groupName);
+            if (groupData != null) {
+                int priority = groupData.getPriority();
+                if (priority > highestPriority) {
+                    highestPriority = priority;
+                    highestGroup = groupName;
+                }
+            }
+        }
+
+        return highestGroup;
+    }
+}
@@ -0,0 +1,71 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.MyPermissionsConfig;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link DisplayProfile} of every user looked up so far, so chat formatting
+ * costs a single map lookup. A profile is only dropped when its user's data changes,
+ * when one of their groups, or the default group, changes priority, prefix or suffix,
+ * or when the player disconnects.
+ *
+ * Invalidated from {@link PermissionManager#recompile} after the new state is published;
+ * a profile resolved against an older state removes itself (see PermissionManager).
+ */
+final class DisplayProfiles {
+
+    private final ConcurrentHashMap<String, DisplayProfile> profiles = new ConcurrentHashMap<>();
+
+    DisplayProfile get(String uuid) {
+        return profiles.get(uuid);
+    }
+
+    void put(String uuid, DisplayProfile profile) {
+        profiles.put(uuid, profile);
+    }
+
+    void remove(String uuid) {
+        profiles.remove(uuid);
+    }
+
+    void remove(String uuid, DisplayProfile profile) {
+        profiles.remove(uuid, profile);
+    }
+
+    void clear() {
+        profiles.clear();
+    }
+
+    /**
+     * Drops the profiles a snapshot change can affect
+     *
+     * @param before Previous snapshot
+     * @param after New snapshot
+     * @param changedGroups Groups edited, created or removed
+     * @param changedUsers Users edited, created or removed
+     */
+    void invalidate(MyPermissionsConfig before, MyPermissionsConfig after,
+                    Set<String> changedGroups, Set<String> changedUsers) {
+        for (String uuid : changedUsers) {
+            profiles.remove(uuid);
+        }
+
+        for (String name : changedGroups) {
+            if (!DisplayProfile.affects(before.getGroups().get(name), after.getGroups().get(name))) {
+                continue;
+            }
+            if (name.equals(after.getDefaultGroup())) {
+                // Every profile may fall back on the default group
+                profiles.clear();
+                return;
+            }
+            profiles.keySet().removeIf(uuid -> {
+                UserData userData = after.getUsers().get(uuid);
+                return userData != null && userData.getGroups().contains(name);
+            });
+        }
+    }
+}
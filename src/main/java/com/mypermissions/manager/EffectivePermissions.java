@@ -0,0 +1,113 @@
+package com.mypermissions.manager;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A ruleset's resolved permissions for the interned nodes, stored as two bits per node:
+ * - allow: the node resolves to granted
+ * - deny: the node is explicitly negated somewhere in the ruleset's chain
+ * A node with both bits set matched no rule and resolves to false, like any unmatched
+ * node; a node with neither was not resolved yet.
+ *
+ * Nodes are resolved lazily, the first time they are checked, so building the vector
+ * after a config change costs nothing per interned node. Both bits of a node live in
+ * the same word and are set together, so readers never see half an answer.
+ *
+ * Rulesets that answer every node the same way (see {@link #ALL} and {@link #NONE})
+ * skip the bitsets and cover every node, interned or not.
+ */
+final class EffectivePermissions {
+
+    static final int UNRESOLVED = 0;
+    static final int ALLOWED = 1;
+    static final int DENIED = 2;
+    static final int UNMATCHED = 3;
+
+    /** Superuser ruleset: '*' granted and no negation anywhere */
+    static final EffectivePermissions ALL = new EffectivePermissions(true);
+
+    /** Ruleset without a single rule: nothing can be granted */
+    static final EffectivePermissions NONE = new EffectivePermissions(false);
+
+    // 32 nodes per word, allow bit then deny bit
+    private final AtomicLongArray bits;
+    private final int size;
+    private final int uniform;
+
+    /**
+     * Creates an empty vector covering the nodes interned so far
+     *
+     * @param size Number of interned nodes
+     */
+    EffectivePermissions(int size) {
+        this.bits = new AtomicLongArray((size + 31) >>> 5);
+        this.size = size;
+        this.uniform = UNRESOLVED;
+    }
+
+    private EffectivePermissions(boolean allowed) {
+        this.bits = null;
+        this.size = 0;
+        this.uniform = allowed ? ALLOWED : UNMATCHED;
+    }
+
+    /**
+     * Turns a resolved answer into a node state
+     *
+     * @param resolved true/false if a rule matched, null if none did
+     */
+    static int stateOf(Boolean resolved) {
+        return resolved == null ? UNMATCHED : resolved ? ALLOWED : DENIED;
+    }
+
+    /**
+     * Checks whether this vector answers the node ID
+     *
+     * @param id Node ID, or -1 if the node isn't interned
+     */
+    boolean covers(int id) {
+        return uniform != UNRESOLVED || (id >= 0 && id < size);
+    }
+
+    /**
+     * Gets a covered node's state
+     *
+     * @return {@link #UNRESOLVED} if it wasn't resolved yet
+     */
+    int get(int id) {
+        if (uniform != UNRESOLVED) {
+            return uniform;
+        }
+        return (int) (bits.get(id >>> 5) >>> ((id & 31) << 1)) & 3;
+    }
+
+    /**
+     * Stores a covered node's resolved state, unless it was resolved meanwhile
+     */
+    void set(int id, int state) {
+        int index = id >>> 5;
+        int shift = (id & 31) << 1;
+        long word;
+        do {
+            word = bits.get(index);
+            if (((word >>> shift) & 3) != UNRESOLVED) {
+                return;
+            }
+        } while (!bits.compareAndSet(index, word, word | ((long) state << shift)));
+    }
+
+    /**
+     * Forgets a node's state again, if it still is the given one
+     */
+    void clear(int id, int state) {
+        int index = id >>> 5;
+        int shift = (id & 31) << 1;
+        long word;
+        do {
+            word = bits.get(index);
+            if (((word >>> shift) & 3) != state) {
+                return;
+            }
+        } while (!bits.compareAndSet(index, word, word & ~(3L << shift)));
+    }
+}
@@ -0,0 +1,89 @@
+package com.mypermissions.manager;
+
+/**
+ * Approximate access counter (count-min sketch with 4-bit counters) used by
+ * {@link ResultCache} to decide which cached results are worth keeping.
+ *
+ * Every counter is halved once the number of recorded accesses reaches ten times
+ * the cache size, so old popularity fades and the sketch follows the current workload.
+ * Updates are not atomic: a lost increment only makes an estimate slightly lower.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private long[] table = new long[64];
+    private int sampleSize = 640;
+    private int additions;
+
+    /**
+     * Resizes the sketch for a cache of the given size, forgetting all counts
+     */
+    void ensureCapacity(int maximum) {
+        int length = Integer.highestOneBit(Math.max(64, Math.min(maximum, 1 << 24) / 2) - 1) << 1;
+        if (length == table.length) {
+            return;
+        }
+        table = new long[length];
+        sampleSize = Math.max(640, maximum * 10);
+        additions = 0;
+    }
+
+    /**
+     * Gets the estimated number of accesses of an item (0 to 15)
+     */
+    int frequency(int hash) {
+        long[] counters = table;
+        int spread = spread(hash);
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int shift = ((spread >>> (i << 3)) & 15) << 2;
+            int count = (int) ((counters[indexOf(counters, spread, i)] >>> shift) & 15);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records one access of an item
+     */
+    void increment(int hash) {
+        long[] counters = table;
+        int spread = spread(hash);
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(counters, spread, i);
+            int shift = ((spread >>> (i << 3)) & 15) << 2;
+            if (((counters[index] >>> shift) & 15) != 15) {
+                counters[index] += 1L << shift;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset(counters);
+        }
+    }
+
+    private void reset(long[] counters) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = (counters[i] >>> 1) & RESET_MASK;
+        }
+        additions = additions >>> 1;
+    }
+
+    private static int indexOf(long[] counters, int spread, int depth) {
+        long hash = (spread + SEEDS[depth]) * SEEDS[depth];
+        hash += hash >>> 32;
+        return (int) hash & (counters.length - 1);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
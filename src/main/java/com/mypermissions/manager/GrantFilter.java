@@ -0,0 +1,117 @@
+package com.mypermissions.manager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Global pre-filter answering "nobody can possibly have this node" without looking at
+ * any user. It is a segment trie of everything any group or user list could grant:
+ * - Exact entries (including the literal text of negations, which the lists also match)
+ * - The literal prefix of every granting wildcard, covering everything below it
+ * A granting wildcard without a literal prefix ('*', '*.admin', ...) lets everything through.
+ *
+ * The filter may let through nodes nobody ends up having, but never rejects a node
+ * someone has, so a rejected node resolves to false for every user.
+ */
+final class GrantFilter {
+
+    private final PermissionTrie trie;
+    private final boolean grantsAnything;
+
+    private GrantFilter(PermissionTrie trie, boolean grantsAnything) {
+        this.trie = trie;
+        this.grantsAnything = grantsAnything;
+    }
+
+    /**
+     * Checks whether some list could grant the node
+     */
+    boolean mayGrant(String node) {
+        return grantsAnything || isCovered(trie.match(node));
+    }
+
+    /**
+     * Checks whether some list could grant an already split node
+     */
+    boolean mayGrant(PermissionNode node) {
+        return grantsAnything || isCovered(trie.match(node));
+    }
+
+    private static boolean isCovered(long match) {
+        return PermissionTrie.exactState(match) != PermissionTrie.EXACT_NONE
+            || PermissionTrie.wildcardRule(match) != PermissionTrie.NO_MATCH;
+    }
+
+    /**
+     * Counts what every list can grant, so lists can be added and removed as they
+     * change and the filter is only rebuilt when the set of grantable entries changes
+     */
+    static final class Counts {
+        private final Map<String, Integer> exact = new HashMap<>();
+        private final Map<String, Integer> prefixes = new HashMap<>();
+        private int universal;
+        private boolean changed = true;
+
+        /**
+         * Adds (delta 1) or removes (delta -1) the entries of one permission list
+         */
+        void add(List<String> permissions, int delta) {
+            if (permissions == null) {
+                return;
+            }
+            for (String permission : permissions) {
+                if (permission == null) {
+                    continue;
+                }
+                count(exact, permission, delta);
+                if (permission.startsWith("-") || !permission.contains("*")) {
+                    continue;
+                }
+
+                int lastDot = permission.lastIndexOf('.', permission.indexOf('*'));
+                if (lastDot <= 0) {
+                    int before = universal;
+                    universal += delta;
+                    changed |= (before == 0) != (universal == 0);
+                } else {
+                    count(prefixes, permission.substring(0, lastDot), delta);
+                }
+            }
+        }
+
+        private void count(Map<String, Integer> counts, String key, int delta) {
+            int next = counts.getOrDefault(key, 0) + delta;
+            if (next <= 0) {
+                changed |= counts.remove(key) != null;
+            } else if (counts.put(key, next) == null) {
+                changed = true;
+            }
+        }
+
+        void clear() {
+            exact.clear();
+            prefixes.clear();
+            universal = 0;
+            changed = true;
+        }
+
+        /**
+         * Builds the filter, reusing the previous one if no entry appeared or disappeared
+         */
+        GrantFilter build(GrantFilter previous) {
+            if (!changed && previous != null) {
+                return previous;
+            }
+            PermissionTrie.Builder builder = new PermissionTrie.Builder();
+            for (String entry : exact.keySet()) {
+                builder.addExact(entry, false);
+            }
+            for (String prefix : prefixes.keySet()) {
+                builder.addWildcard(prefix, 0, false);
+            }
+            changed = false;
+            return new GrantFilter(builder.build(), universal > 0);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.MyPermissionsConfig;
+import com.mypermissions.config.MyPermissionsConfig.GroupData;
+
+import java.util.*;
+
+/**
+ * Precomputed inheritance of every group for one config snapshot.
+ *
+ * Each group's ancestors are linearized into an array in the exact order the
+ * recursive lookup visits them: the group itself, then each parent in list order,
+ * depth first, skipping groups already visited. Checking a node is then a flat loop
+ * over the compiled lists of that array, with no recursion and no visited set.
+ *
+ * Inheritance cycles are detected while linearizing. A cycle never loops (the
+ * repeated group is skipped, as before), but it is reported so it can be fixed.
+ */
+final class GroupHierarchy {
+
+    private static final CompiledPermissions[] NO_CHAIN = new CompiledPermissions[0];
+
+    // Group name -> its linearized ancestors
+    private final Map<String, Lineage> lineages;
+    // Group name -> groups whose lineage contains it
+    private final Map<String, Set<String>> descendants;
+    private final List<List<String>> cycles;
+
+    private GroupHierarchy(Map<String, Lineage> lineages, Map<String, Set<String>> descendants,
+                           List<List<String>> cycles) {
+        this.lineages = lineages;
+        this.descendants = descendants;
+        this.cycles = cycles;
+    }
+
+    /**
+     * One group's linearized ancestors
+     *
+     * @param names Every group name reached (itself first), including missing groups
+     * @param lists Compiled list of each name, null where the group doesn't exist
+     * @param chain The non-null lists, ready to be checked in order
+     */
+    private record Lineage(String[] names, CompiledPermissions[] lists, CompiledPermissions[] chain) {
+    }
+
+    /**
+     * Linearizes every group of a snapshot
+     *
+     * @param config Config snapshot
+     * @param compiled Compiled permission list of every group
+     */
+    static GroupHierarchy build(MyPermissionsConfig config, Map<String, CompiledPermissions> compiled) {
+        GroupHierarchy hierarchy = new GroupHierarchy(new HashMap<>(), new HashMap<>(), new ArrayList<>());
+        for (String name : config.getGroups().keySet()) {
+            hierarchy.linearize(name, config, compiled);
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Creates the hierarchy for the next snapshot, only re-linearizing the edited
+     * groups and the groups that inherit from them
+     *
+     * @param config Next config snapshot
+     * @param compiled Compiled permission list of every group in the next snapshot
+     * @param changedGroups Groups that were edited, created or deleted
+     */
+    GroupHierarchy update(MyPermissionsConfig config, Map<String, CompiledPermissions> compiled, Set<String> changedGroups) {
+        Set<String> affected = new HashSet<>();
+        for (String name : changedGroups) {
+            affected.add(name);
+            affected.addAll(descendants.getOrDefault(name, Set.of()));
+        }
+
+        GroupHierarchy next = new GroupHierarchy(new HashMap<>(lineages), new HashMap<>(), new ArrayList<>());
+        for (Map.Entry<String, Set<String>> entry : descendants.entrySet()) {
+            Set<String> kept = new HashSet<>(entry.getValue());
+            kept.removeAll(affected);
+            if (!kept.isEmpty()) {
+                next.descendants.put(entry.getKey(), kept);
+            }
+        }
+        for (List<String> cycle : cycles) {
+            if (Collections.disjoint(cycle, affected)) {
+                next.cycles.add(cycle);
+            }
+        }
+
+        for (String name : affected) {
+            next.lineages.remove(name);
+            if (config.getGroups().containsKey(name)) {
+                next.linearize(name, config, compiled);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Linearizes one group and indexes it under every group it reaches
+     */
+    private void linearize(String name, MyPermissionsConfig config, Map<String, CompiledPermissions> compiled) {
+        List<String> lineage = new ArrayList<>();
+        visit(name, config, new LinkedHashSet<>(), new HashSet<>(), lineage);
+
+        CompiledPermissions[] lists = new CompiledPermissions[lineage.size()];
+        List<CompiledPermissions> chain = new ArrayList<>(lineage.size());
+        for (int i = 0; i < lineage.size(); i++) {
+            String reached = lineage.get(i);
+            lists[i] = compiled.get(reached);
+            if (lists[i] != null) {
+                chain.add(lists[i]);
+            }
+            descendants.computeIfAbsent(reached, k -> new HashSet<>()).add(name);
+        }
+
+        lineages.put(name, new Lineage(lineage.toArray(new String[0]), lists, chain.toArray(NO_CHAIN)));
+    }
+
+    private void visit(String name, MyPermissionsConfig config, LinkedHashSet<String> path,
+                       Set<String> visited, List<String> lineage) {
+        if (!visited.add(name)) {
+            if (path.contains(name)) {
+                recordCycle(path, name);
+            }
+            return;
+        }
+        lineage.add(name);
+
+        GroupData group = config.getGroups().get(name);
+        if (group == null) {
+            return;
+        }
+
+        path.add(name);
+        for (String parent : group.getParents()) {
+            if (parent != null) {
+                visit(parent, config, path, visited, lineage);
+            }
+        }
+        path.remove(name);
+    }
+
+    private void recordCycle(LinkedHashSet<String> path, String repeated) {
+        List<String> cycle = new ArrayList<>();
+        boolean inCycle = false;
+        for (String step : path) {
+            inCycle |= step.equals(repeated);
+            if (inCycle) {
+                cycle.add(step);
+            }
+        }
+        cycle.add(repeated);
+
+        // Every group of a cycle reports it; keep it once, whatever group it starts at
+        Set<String> members = new HashSet<>(cycle);
+        for (List<String> known : cycles) {
+            if (known.size() == cycle.size() && members.containsAll(known)) {
+                return;
+            }
+        }
+        cycles.add(List.copyOf(cycle));
+    }
+
+    /**
+     * Gets the compiled lists to check for a group, in lookup order
+     */
+    CompiledPermissions[] chainOf(String group) {
+        Lineage lineage = lineages.get(group);
+        return lineage != null ? lineage.chain() : NO_CHAIN;
+    }
+
+    /**
+     * Gets every group name a group reaches (itself first), in lookup order
+     */
+    List<String> lineageOf(String group) {
+        Lineage lineage = lineages.get(group);
+        return lineage != null ? Arrays.asList(lineage.names()) : List.of(group);
+    }
+
+    /**
+     * Builds a user's full lookup chain: each of the user's groups, then the default
+     * group, skipping groups an earlier lineage already covered
+     *
+     * @param groups User's groups, in order
+     * @param defaultGroup Default group name
+     * @return Compiled lists in lookup order
+     */
+    CompiledPermissions[] chainOf(List<String> groups, String defaultGroup) {
+        if (groups.isEmpty()) {
+            return chainOf(defaultGroup);
+        }
+
+        Set<String> visited = new HashSet<>();
+        List<CompiledPermissions> chain = new ArrayList<>();
+        for (String group : groups) {
+            appendLineage(group, visited, chain);
+        }
+        appendLineage(defaultGroup, visited, chain);
+        return chain.toArray(NO_CHAIN);
+    }
+
+    private void appendLineage(String group, Set<String> visited, List<CompiledPermissions> chain) {
+        if (group == null) {
+            return;
+        }
+        Lineage lineage = lineages.get(group);
+        if (lineage == null) {
+            visited.add(group);
+            return;
+        }
+
+        // Everything an already visited group reaches was visited along with it,
+        // so skipping visited names gives the same order as one shared walk
+        for (int i = 0; i < lineage.names().length; i++) {
+            if (visited.add(lineage.names()[i]) && lineage.lists()[i] != null) {
+                chain.add(lineage.lists()[i]);
+            }
+        }
+    }
+
+    List<List<String>> cycles() {
+        return cycles;
+    }
+}
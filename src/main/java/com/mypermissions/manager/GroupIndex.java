@@ -0,0 +1,113 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.MyPermissionsConfig;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.util.*;
+
+/**
+ * Reverse index from each group to the rulesets (see {@link RulesetKey}) whose
+ * inheritance closure contains it. A closure holds every group name reached from the
+ * ruleset's groups through parents, including names that don't exist (yet), so
+ * creating a group also finds the rulesets that were already pointing at it.
+ *
+ * Also counts the users of each ruleset, so a ruleset nobody has anymore is dropped.
+ *
+ * Only updated from {@link PermissionManager#recompile}, which runs one snapshot at a time.
+ */
+final class GroupIndex {
+
+    private final Map<String, RulesetKey> rulesetByUser = new HashMap<>();
+    private final Map<RulesetKey, Integer> userCounts = new HashMap<>();
+    private final Map<String, Set<RulesetKey>> rulesetsByGroup = new HashMap<>();
+    private final Map<RulesetKey, Set<String>> closureByRuleset = new HashMap<>();
+
+    /**
+     * Rebuilds the whole index from a snapshot
+     */
+    void rebuild(MyPermissionsConfig config, GroupHierarchy hierarchy) {
+        rulesetByUser.clear();
+        userCounts.clear();
+        rulesetsByGroup.clear();
+        closureByRuleset.clear();
+        for (Map.Entry<String, UserData> entry : config.getUsers().entrySet()) {
+            update(entry.getKey(), entry.getValue(), hierarchy);
+        }
+    }
+
+    /**
+     * Moves a user to the ruleset of their new data
+     *
+     * @param uuid User's UUID
+     * @param userData User's data in the snapshot, or null if the user was removed
+     * @param hierarchy Group inheritance of the snapshot
+     * @return The user's previous ruleset if no user has it anymore, otherwise null
+     */
+    RulesetKey update(String uuid, UserData userData, GroupHierarchy hierarchy) {
+        RulesetKey next = RulesetKey.of(userData);
+        RulesetKey previous = next != RulesetKey.NONE ? rulesetByUser.put(uuid, next) : rulesetByUser.remove(uuid);
+        if (next.equals(previous)) {
+            return null;
+        }
+
+        if (next != RulesetKey.NONE && userCounts.merge(next, 1, Integer::sum) == 1) {
+            index(next, hierarchy);
+        }
+        if (previous != null && userCounts.merge(previous, -1, Integer::sum) == 0) {
+            userCounts.remove(previous);
+            unindex(previous);
+            return previous;
+        }
+        return null;
+    }
+
+    /**
+     * Recomputes a ruleset's closure after the hierarchy changed shape
+     */
+    void refresh(RulesetKey ruleset, GroupHierarchy hierarchy) {
+        if (userCounts.containsKey(ruleset)) {
+            unindex(ruleset);
+            index(ruleset, hierarchy);
+        }
+    }
+
+    private void index(RulesetKey ruleset, GroupHierarchy hierarchy) {
+        Set<String> closure = new HashSet<>();
+        for (String group : ruleset.groups()) {
+            if (group != null) {
+                closure.addAll(hierarchy.lineageOf(group));
+            }
+        }
+        closureByRuleset.put(ruleset, closure);
+        for (String group : closure) {
+            rulesetsByGroup.computeIfAbsent(group, k -> new HashSet<>()).add(ruleset);
+        }
+    }
+
+    private void unindex(RulesetKey ruleset) {
+        Set<String> closure = closureByRuleset.remove(ruleset);
+        if (closure == null) {
+            return;
+        }
+        for (String group : closure) {
+            Set<RulesetKey> rulesets = rulesetsByGroup.get(group);
+            if (rulesets != null && rulesets.remove(ruleset) && rulesets.isEmpty()) {
+                rulesetsByGroup.remove(group);
+            }
+        }
+    }
+
+    /**
+     * Gets the rulesets whose closure contains a group
+     */
+    Set<RulesetKey> rulesetsOf(String group) {
+        return rulesetsByGroup.getOrDefault(group, Set.of());
+    }
+
+    /**
+     * Gets a ruleset's closure, as of the last update
+     */
+    Set<String> closureOf(RulesetKey ruleset) {
+        return closureByRuleset.getOrDefault(ruleset, Set.of());
+    }
+}
@@ -0,0 +1,121 @@
+package com.mypermissions.manager;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Watches the heap memory pools through their usage thresholds and calls back
+ * when the JVM reports that one of them is running full.
+ *
+ * Thresholds are only installed on pools where nobody else has set one yet,
+ * so other plugins (or the server) relying on them are left alone. The ones
+ * installed here are removed again on close, so a reloaded plugin starts clean.
+ */
+final class HeapPressureMonitor implements NotificationListener {
+
+    // Fraction of a pool's maximum size that counts as memory pressure
+    private static final double THRESHOLD = 0.85;
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+
+    // Pools whose thresholds were installed here, to reset on close
+    private final List<MemoryPoolMXBean> usageThresholds = new ArrayList<>();
+    private final List<MemoryPoolMXBean> collectionThresholds = new ArrayList<>();
+    private volatile Runnable onPressure;
+
+    HeapPressureMonitor() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isUsageThresholdSupported()) {
+                continue;
+            }
+            long max = pool.getUsage().getMax();
+            if (max <= 0) {
+                continue;
+            }
+
+            long threshold = (long) (max * THRESHOLD);
+            if (pool.getUsageThreshold() == 0) {
+                pool.setUsageThreshold(threshold);
+                usageThresholds.add(pool);
+            }
+            if (pool.isCollectionUsageThresholdSupported() && pool.getCollectionUsageThreshold() == 0) {
+                pool.setCollectionUsageThreshold(threshold);
+                collectionThresholds.add(pool);
+            }
+            pools.add(pool);
+        }
+    }
+
+    /**
+     * Starts listening for threshold notifications
+     *
+     * @param onPressure Called (on a JMX thread) every time a heap pool crosses its threshold
+     */
+    void start(Runnable onPressure) {
+        this.onPressure = onPressure;
+        if (!pools.isEmpty()) {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+        }
+    }
+
+    /**
+     * Checks whether any watched pool is still above its threshold.
+     * Uses the usage after the last collection when available, since the
+     * current usage also counts garbage that is about to be freed.
+     */
+    boolean isUnderPressure() {
+        for (MemoryPoolMXBean pool : pools) {
+            boolean exceeded = pool.isCollectionUsageThresholdSupported() && pool.getCollectionUsageThreshold() > 0
+                ? pool.isCollectionUsageThresholdExceeded()
+                : pool.getUsageThreshold() > 0 && pool.isUsageThresholdExceeded();
+            if (exceeded) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+                || MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            Runnable callback = onPressure;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * Stops listening for notifications and removes the thresholds installed here
+     */
+    void close() {
+        if (pools.isEmpty()) {
+            return;
+        }
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            // Never started
+        }
+
+        // 0 disables a threshold
+        for (MemoryPoolMXBean pool : usageThresholds) {
+            pool.setUsageThreshold(0);
+        }
+        for (MemoryPoolMXBean pool : collectionThresholds) {
+            pool.setCollectionUsageThreshold(0);
+        }
+        usageThresholds.clear();
+        collectionThresholds.clear();
+    }
+}
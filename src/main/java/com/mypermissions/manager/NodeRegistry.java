@@ -0,0 +1,64 @@
+package com.mypermissions.manager;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns permission nodes to dense int IDs, keeping one {@link PermissionNode}
+ * handle per node so lookups and bitset rebuilds reuse its pre-split segments.
+ * IDs are never reused or removed, so they stay valid across reloads.
+ */
+final class NodeRegistry {
+
+    // Upper bound so plugins probing dynamic node names can't grow it forever
+    static final int MAX_NODES = 1 << 16;
+
+    private final Map<String, PermissionNode> handles = new ConcurrentHashMap<>();
+    private volatile PermissionNode[] nodes = new PermissionNode[64];
+    private volatile int size;
+
+    /**
+     * Gets the handle of an already interned node
+     *
+     * @param node Permission node
+     * @return The node's handle, or null if it was never interned
+     */
+    PermissionNode get(String node) {
+        return handles.get(node);
+    }
+
+    /**
+     * Interns a node, assigning the next free ID if it is new
+     *
+     * @param node Permission node
+     * @return The node's handle, or null if the registry is full
+     */
+    synchronized PermissionNode intern(String node) {
+        PermissionNode existing = handles.get(node);
+        if (existing != null) {
+            return existing;
+        }
+        if (size >= MAX_NODES) {
+            return null;
+        }
+
+        int id = size;
+        if (id == nodes.length) {
+            nodes = Arrays.copyOf(nodes, id * 2);
+        }
+        PermissionNode handle = PermissionNode.interned(node, this, id);
+        nodes[id] = handle;
+        size = id + 1;
+        handles.put(node, handle);
+        return handle;
+    }
+
+    int size() {
+        return size;
+    }
+
+    PermissionNode node(int id) {
+        return nodes[id];
+    }
+}
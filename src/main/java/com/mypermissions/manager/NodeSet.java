@@ -0,0 +1,59 @@
+package com.mypermissions.manager;
+
+import java.util.Arrays;
+
+/**
+ * A fixed list of permission nodes checked together, e.g. every ability shown in a UI.
+ * Create it once and keep it; each node is a {@link PermissionNode} handle, so
+ * checks skip hashing the node names altogether.
+ *
+ * Results come back as a bitmask: bit i is set when the i-th node is granted.
+ */
+public final class NodeSet {
+
+    // One bit of the result mask per node
+    public static final int MAX_SIZE = Long.SIZE;
+
+    private final PermissionNode[] nodes;
+
+    private NodeSet(PermissionNode[] nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Creates a node set
+     *
+     * @param nodes Permission nodes, at most {@link #MAX_SIZE}
+     * @return The node set, in the given order
+     */
+    public static NodeSet of(String... nodes) {
+        if (nodes.length > MAX_SIZE) {
+            throw new IllegalArgumentException("A node set holds at most " + MAX_SIZE + " nodes, got " + nodes.length);
+        }
+        PermissionNode[] handles = new PermissionNode[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            handles[i] = PermissionNode.of(nodes[i]);
+        }
+        return new NodeSet(handles);
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public PermissionNode get(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Checks whether the i-th node is set in a result mask
+     */
+    public static boolean isSet(long mask, int index) {
+        return (mask & (1L << index)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeSet" + Arrays.toString(nodes);
+    }
+}
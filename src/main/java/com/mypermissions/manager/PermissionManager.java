@@ -7,6 +7,12 @@ import com.mypermissions.config.MyPermissionsConfig.UserData;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Thread-safe permission engine with support for:
@@ -14,11 +20,498 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Wildcards (* and plugin.*)
  * - Negated permissions (-permission.node)
  * - Infinite loop prevention
+ * - Permission lists compiled into segment tries (see {@link CompiledPermissions})
+ * - Interned nodes answered from per-user bitsets (see {@link EffectivePermissions})
  */
 public class PermissionManager {
-    
-    // Permission cache for better performance
-    private final Map<String, Boolean> permissionCache = new ConcurrentHashMap<>();
+
+    // Interned nodes, shared by every compiled state
+    private final NodeRegistry nodeRegistry = new NodeRegistry();
+
+    // Which users each group's changes can reach
+    private final GroupIndex groupIndex = new GroupIndex();
+    private final DisplayProfiles displayProfiles = new DisplayProfiles();
+
+    // Everything any list can grant, counted so the global pre-filter updates incrementally
+    private final GrantFilter.Counts grantCounts = new GrantFilter.Counts();
+
+    // Everything compiled and cached for the current config snapshot, swapped as a whole.
+    // Every swap takes the next epoch, so invalidating is an O(1) epoch bump
+    private volatile CompiledState state;
+    private final AtomicLong epochs = new AtomicLong();
+
+    // Bounds the results cached across all segments, shrinking under heap pressure
+    private final HeapPressureMonitor heapPressure;
+    private final ResultCache resultCache;
+
+    // Per-thread caches in front of the segments; the slot count comes from the settings.
+    // An open tick scope temporarily puts its own memo in place of the thread's cache
+    private final ThreadLocal<ThreadResultCache> threadCaches = new ThreadLocal<>();
+    private volatile int threadCacheSlots;
+
+    // Most results re-resolved after a global invalidation
+    private static final int REWARM_LIMIT = 10_000;
+
+    // Most users linked per state before the links start over, so users checked once
+    // (e.g. offline players looked up by other plugins) don't pile up
+    private static final int MAX_LINKS = 16_384;
+
+    // Re-resolves recently hot results after a global invalidation, off the world threads
+    private final ExecutorService rewarmer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MyPermissions-Rewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public PermissionManager() {
+        this(Main.getConfig());
+    }
+
+    /**
+     * Creates a manager compiled from a given snapshot, without going through the plugin
+     */
+    PermissionManager(MyPermissionsConfig config) {
+        heapPressure = new HeapPressureMonitor();
+        resultCache = new ResultCache(heapPressure::isUnderPressure);
+        heapPressure.start(resultCache::shrink);
+        // Not through recompile, which subclasses could override before this is set up
+        if (config != null) {
+            applySettings(config);
+            rebuild(config, null);
+        }
+    }
+
+    /**
+     * Stops watching heap memory and rewarming; call when the plugin shuts down
+     */
+    public void close() {
+        heapPressure.close();
+        rewarmer.shutdownNow();
+    }
+
+    /**
+     * Compiled data for one config snapshot, plus the cache segments built on it,
+     * one per distinct ruleset (see {@link RulesetKey}), and the users linked to them.
+     * Lookups always go through a single state, so they never mix two snapshots, and
+     * a global clear is just a new state.
+     */
+    private static final class CompiledState {
+        final long epoch;
+        final MyPermissionsConfig config;
+        final Map<String, CompiledPermissions> groups;
+        final GroupHierarchy hierarchy;
+        final GrantFilter grants;
+        final Map<RulesetKey, UserSegment> segments;
+
+        // Each user's ruleset, by String and by UUID so hits never convert
+        final Map<String, UserLink> links;
+        final Map<UUID, UserLink> linksByUuid;
+
+        CompiledState(long epoch, MyPermissionsConfig config, Map<String, CompiledPermissions> groups,
+                      GroupHierarchy hierarchy, GrantFilter grants) {
+            this.epoch = epoch;
+            this.config = config;
+            this.groups = groups;
+            this.hierarchy = hierarchy;
+            this.grants = grants;
+            this.segments = new ConcurrentHashMap<>();
+            this.links = new ConcurrentHashMap<>();
+            this.linksByUuid = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Creates the state for the next snapshot, keeping every ruleset's segment
+         * and every user's link
+         */
+        CompiledState(long epoch, MyPermissionsConfig config, Map<String, CompiledPermissions> groups,
+                      GroupHierarchy hierarchy, GrantFilter grants, CompiledState previous) {
+            this.epoch = epoch;
+            this.config = config;
+            this.groups = groups;
+            this.hierarchy = hierarchy;
+            this.grants = grants;
+            this.segments = new ConcurrentHashMap<>(previous.segments);
+            this.links = new ConcurrentHashMap<>(previous.links);
+            this.linksByUuid = new ConcurrentHashMap<>(previous.linksByUuid);
+        }
+
+        UserSegment segment(RulesetKey key, UserData userData) {
+            UserSegment segment = segments.get(key);
+            if (segment == null) {
+                segment = segments.computeIfAbsent(key, k -> new UserSegment(k, userData));
+            }
+            return segment;
+        }
+
+        void unlink(String uuid) {
+            links.remove(uuid);
+            try {
+                linksByUuid.remove(UUID.fromString(uuid));
+            } catch (IllegalArgumentException e) {
+                // Not a UUID, so it was never linked by one
+            }
+        }
+
+        void removeSegment(RulesetKey key) {
+            UserSegment segment = segments.remove(key);
+            if (segment != null) {
+                segment.invalidate();
+            }
+        }
+
+        /**
+         * Replaces a ruleset's segment with one that only keeps the results none of the
+         * given lists answer
+         */
+        void retainUnaffected(RulesetKey key, List<CompiledPermissions> filters) {
+            UserSegment segment = segments.get(key);
+            if (segment == null || filters.isEmpty()) {
+                return;
+            }
+
+            segments.put(key, segment.retain(node -> {
+                for (CompiledPermissions filter : filters) {
+                    if (filter.check(node) != null) {
+                        return true;
+                    }
+                }
+                return false;
+            }));
+        }
+    }
+
+    /**
+     * A user's ruleset, as computed from one version of the user's data.
+     * Checks compare that data with the snapshot's by identity (copy-on-write gives
+     * every edit a new instance), so a stale link is simply recomputed. Edited users
+     * are unlinked when the next state is built, so links never keep old data alive.
+     */
+    private record UserLink(String uuid, UserData userData, RulesetKey key) {
+    }
+
+    /**
+     * Compiles a newly published config snapshot and swaps it in.
+     * Group lists are compiled in parallel across groups; lists that did not change
+     * since the previous snapshot are reused as-is.
+     *
+     * Cached data is only dropped where the change can matter: edited users move to the
+     * ruleset of their new data, and an edited group only touches the rulesets whose
+     * inheritance closure contains it (see {@link GroupIndex}), and only the nodes its
+     * old or new list answers.
+     *
+     * @param config Frozen config snapshot
+     */
+    public synchronized void recompile(MyPermissionsConfig config) {
+        if (config == null) {
+            return;
+        }
+
+        applySettings(config);
+
+        CompiledState previous = state;
+        if (previous == null || !previous.config.getDefaultGroup().equals(config.getDefaultGroup())) {
+            rebuild(config, previous);
+            displayProfiles.clear();
+            return;
+        }
+
+        // Copy-on-write gives every edited group and user a new instance
+        Set<String> changedGroups = MyPermissionsConfig.changedKeys(previous.config.getGroups(), config.getGroups());
+        Set<String> changedUsers = MyPermissionsConfig.changedKeys(previous.config.getUsers(), config.getUsers());
+
+        Map<String, CompiledPermissions> groups = previous.groups;
+        GroupHierarchy hierarchy = previous.hierarchy;
+        if (!changedGroups.isEmpty()) {
+            groups = compileGroups(config, previous.groups);
+            hierarchy = previous.hierarchy.update(config, groups, changedGroups);
+            reportCycles(previous.hierarchy, hierarchy);
+        }
+
+        for (String name : changedGroups) {
+            GroupData oldGroup = previous.config.getGroups().get(name);
+            GroupData newGroup = config.getGroups().get(name);
+            grantCounts.add(oldGroup != null ? oldGroup.getPermissions() : null, -1);
+            grantCounts.add(newGroup != null ? newGroup.getPermissions() : null, 1);
+        }
+        for (String uuid : changedUsers) {
+            UserData oldUser = previous.config.getUsers().get(uuid);
+            UserData newUser = config.getUsers().get(uuid);
+            grantCounts.add(oldUser != null ? oldUser.getPermissions() : null, -1);
+            grantCounts.add(newUser != null ? newUser.getPermissions() : null, 1);
+        }
+        GrantFilter grants = grantCounts.build(previous.grants);
+
+        CompiledState next = new CompiledState(epochs.incrementAndGet(), config, groups, hierarchy, grants, previous);
+
+        // Checks relink edited users on their own; only rulesets nobody has anymore go
+        for (String uuid : changedUsers) {
+            UserData userData = config.getUsers().get(uuid);
+            RulesetKey unused = groupIndex.update(uuid, userData, hierarchy);
+            if (unused != null) {
+                next.removeSegment(unused);
+            }
+            if (userData != null) {
+                internNodes(userData.getPermissions());
+            }
+            next.unlink(uuid);
+        }
+
+        if (!changedGroups.isEmpty() && !invalidateGroups(previous, next, changedGroups)) {
+            // The default group's chain changed shape, which every user falls back on
+            next = new CompiledState(epochs.incrementAndGet(), config, groups, hierarchy, grants);
+            resultCache.clear();
+            state = next;
+            rewarm(previous);
+            displayProfiles.invalidate(previous.config, config, changedGroups, changedUsers);
+            return;
+        }
+        state = next;
+        displayProfiles.invalidate(previous.config, config, changedGroups, changedUsers);
+    }
+
+    /**
+     * Sizes the shared and per-thread caches from the settings
+     */
+    private void applySettings(MyPermissionsConfig config) {
+        resultCache.setMaximum(config.getSettings().getCacheMaxEntries());
+        threadCacheSlots = ThreadResultCache.slotsFor(config.getSettings().getThreadCacheSize());
+    }
+
+    /**
+     * Recompiles everything from scratch, dropping every cached result
+     */
+    private void rebuild(MyPermissionsConfig config, CompiledState previous) {
+        Map<String, CompiledPermissions> groups = compileGroups(config, previous != null ? previous.groups : Map.of());
+
+        grantCounts.clear();
+        for (GroupData group : config.getGroups().values()) {
+            if (group != null) {
+                internNodes(group.getPermissions());
+                grantCounts.add(group.getPermissions(), 1);
+            }
+        }
+        for (UserData user : config.getUsers().values()) {
+            if (user != null) {
+                internNodes(user.getPermissions());
+                grantCounts.add(user.getPermissions(), 1);
+            }
+        }
+
+        GroupHierarchy hierarchy = GroupHierarchy.build(config, groups);
+        reportCycles(previous != null ? previous.hierarchy : null, hierarchy);
+
+        groupIndex.rebuild(config, hierarchy);
+        state = new CompiledState(epochs.incrementAndGet(), config, groups, hierarchy, grantCounts.build(null));
+        resultCache.clear();
+        rewarm(previous);
+    }
+
+    /**
+     * Logs inheritance cycles that weren't there in the previous snapshot
+     */
+    private static void reportCycles(GroupHierarchy previous, GroupHierarchy next) {
+        for (List<String> cycle : next.cycles()) {
+            boolean known = previous != null && previous.cycles().stream()
+                .anyMatch(old -> old.size() == cycle.size() && old.containsAll(cycle));
+            if (!known) {
+                System.err.println("[MyPermissions] Inheritance cycle ignored: " + String.join(" -> ", cycle));
+            }
+        }
+    }
+
+    /**
+     * Compiles every group; lists that did not change keep their compiled form
+     */
+    private static Map<String, CompiledPermissions> compileGroups(MyPermissionsConfig config,
+                                                                  Map<String, CompiledPermissions> previousGroups) {
+        return config.getGroups().entrySet().parallelStream()
+            .filter(entry -> entry.getValue() != null)
+            .collect(Collectors.toUnmodifiableMap(
+                Map.Entry::getKey,
+                entry -> {
+                    List<String> permissions = entry.getValue().getPermissions();
+                    CompiledPermissions compiled = previousGroups.get(entry.getKey());
+                    return compiled != null && compiled.isCompiledFrom(permissions)
+                        ? compiled
+                        : CompiledPermissions.compile(permissions);
+                }
+            ));
+    }
+
+    /**
+     * Drops the cached data that edited groups can affect
+     *
+     * @return false if the default group's chain changed shape and everything must go
+     */
+    private boolean invalidateGroups(CompiledState previous, CompiledState next, Set<String> changedGroups) {
+        MyPermissionsConfig before = previous.config;
+        MyPermissionsConfig after = next.config;
+
+        // A permission-only edit can only change nodes its old or new list answers;
+        // a parent edit, or a group appearing or disappearing, reshapes the chain itself
+        Set<String> reshaped = new HashSet<>();
+        Map<String, List<CompiledPermissions>> filters = new HashMap<>();
+        for (String name : changedGroups) {
+            GroupData oldGroup = before.getGroups().get(name);
+            GroupData newGroup = after.getGroups().get(name);
+            if (newGroup != null) {
+                internNodes(newGroup.getPermissions());
+            }
+
+            if (oldGroup == null || newGroup == null || !oldGroup.getParents().equals(newGroup.getParents())) {
+                reshaped.add(name);
+            } else if (!oldGroup.getPermissions().equals(newGroup.getPermissions())) {
+                filters.put(name, List.of(previous.groups.get(name), next.groups.get(name)));
+            }
+        }
+
+        // Rulesets with an edited group in their closure, as it was before the edit
+        Set<RulesetKey> affectedRulesets = new HashSet<>();
+        for (String name : changedGroups) {
+            affectedRulesets.addAll(groupIndex.rulesetsOf(name));
+        }
+
+        List<CompiledPermissions> defaultFilters = new ArrayList<>();
+        Set<String> defaultClosure = new HashSet<>(previous.hierarchy.lineageOf(before.getDefaultGroup()));
+        defaultClosure.addAll(next.hierarchy.lineageOf(after.getDefaultGroup()));
+        boolean defaultReshaped = false;
+        for (String name : defaultClosure) {
+            defaultReshaped |= reshaped.contains(name);
+            defaultFilters.addAll(filters.getOrDefault(name, List.of()));
+        }
+
+        for (RulesetKey ruleset : affectedRulesets) {
+            Set<String> closure = groupIndex.closureOf(ruleset);
+            if (!Collections.disjoint(closure, reshaped)) {
+                next.removeSegment(ruleset);
+                groupIndex.refresh(ruleset, next.hierarchy);
+            } else if (defaultFilters.isEmpty()) {
+                List<CompiledPermissions> rulesetFilters = new ArrayList<>();
+                for (String name : closure) {
+                    rulesetFilters.addAll(filters.getOrDefault(name, List.of()));
+                }
+                next.retainUnaffected(ruleset, rulesetFilters);
+            }
+        }
+
+        if (defaultReshaped) {
+            return false;
+        }
+        if (!defaultFilters.isEmpty()) {
+            // Every ruleset falls back on the default group, so every segment is filtered
+            for (RulesetKey ruleset : new ArrayList<>(next.segments.keySet())) {
+                List<CompiledPermissions> rulesetFilters = new ArrayList<>(defaultFilters);
+                for (String name : groupIndex.closureOf(ruleset)) {
+                    rulesetFilters.addAll(filters.getOrDefault(name, List.of()));
+                }
+                next.retainUnaffected(ruleset, rulesetFilters);
+            }
+        }
+        return true;
+    }
+
+    private void internNodes(List<String> permissions) {
+        if (permissions == null) {
+            return;
+        }
+        for (String permission : permissions) {
+            if (permission == null) {
+                continue;
+            }
+            String permNode = permission.startsWith("-") ? permission.substring(1) : permission;
+            // Wildcard rules are not nodes anyone checks; matched nodes get interned lazily
+            if (!permNode.contains("*")) {
+                nodeRegistry.intern(permNode);
+            }
+        }
+    }
+
+    /**
+     * Gets the calling thread's result cache, or null if disabled
+     */
+    private ThreadResultCache threadCache() {
+        ThreadResultCache cache = threadCaches.get();
+        if (cache != null && cache.scoped) {
+            return cache;
+        }
+
+        int slots = threadCacheSlots;
+        if (slots == 0) {
+            return null;
+        }
+        if (cache == null || cache.size() != slots) {
+            cache = new ThreadResultCache(slots, false);
+            threadCaches.set(cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Opens a scope memoizing every check this thread makes until it is closed,
+     * e.g. for the duration of one tick or command (see {@link TickScope})
+     *
+     * @return The scope, to be closed on this thread
+     */
+    public TickScope openTickScope() {
+        TickScope scope = new TickScope(this, threadCaches.get());
+        threadCaches.set(scope.results);
+        return scope;
+    }
+
+    void closeTickScope(TickScope scope) {
+        if (threadCaches.get() != scope.results) {
+            throw new IllegalStateException("Tick scopes must be closed on their own thread, innermost first");
+        }
+        if (scope.previous != null) {
+            threadCaches.set(scope.previous);
+        } else {
+            threadCaches.remove();
+        }
+    }
+
+    /**
+     * Gets the segment of a user's ruleset, relinking the user if their data changed
+     */
+    private UserSegment segmentOf(CompiledState current, String uuid) {
+        UserLink link = current.links.get(uuid);
+        UserData userData = current.config.getUsers().get(uuid);
+        if (link == null || link.userData() != userData) {
+            link = link(current, uuid, userData);
+            if (current.links.size() >= MAX_LINKS) {
+                current.links.clear();
+            }
+            current.links.put(uuid, link);
+        }
+        return current.segment(link.key(), userData);
+    }
+
+    /**
+     * Gets the segment of a user's ruleset without turning the UUID into a String,
+     * except the first time the user is seen
+     */
+    private UserSegment segmentOf(CompiledState current, UUID uuid) {
+        UserLink link = current.linksByUuid.get(uuid);
+        String key = link != null ? link.uuid() : uuid.toString();
+        UserData userData = current.config.getUsers().get(key);
+        if (link == null || link.userData() != userData) {
+            link = link(current, key, userData);
+            if (current.linksByUuid.size() >= MAX_LINKS) {
+                current.linksByUuid.clear();
+            }
+            current.linksByUuid.put(uuid, link);
+        }
+        return current.segment(link.key(), userData);
+    }
+
+    /**
+     * Links a user to their ruleset, reusing the key of an existing segment so
+     * every user of a ruleset holds the same key instance
+     */
+    private static UserLink link(CompiledState current, String uuid, UserData userData) {
+        RulesetKey key = RulesetKey.of(userData);
+        return new UserLink(uuid, userData, current.segment(key, userData).key);
+    }
 
     /**
      * Checks if a user has a specific permission
@@ -32,141 +525,408 @@ public class PermissionManager {
             return false;
         }
 
-        // Check cache first for performance
-        String cacheKey = uuid + ":" + node;
-        Boolean cached = permissionCache.get(cacheKey);
-        if (cached != null) {
-            return cached;
+        CompiledState current = state;
+        ThreadResultCache local = threadCache();
+        if (local != null) {
+            int cached = local.get(uuid, node, current.epoch);
+            if (cached >= 0) {
+                return cached == 1;
+            }
         }
 
-        MyPermissionsConfig config = Main.getConfig();
-        UserData userData = config.getUsers().get(uuid);
+        boolean result = hasPermission(current, segmentOf(current, uuid), node);
+        if (local != null) {
+            local.put(uuid, node, current.epoch, result);
+        }
+        return result;
+    }
 
-        // Set to prevent infinite loops in inheritance chain
-        Set<String> visitedGroups = new HashSet<>();
-        
-        boolean result;
+    /**
+     * Checks if a user has a specific permission.
+     * Cache hits don't allocate: the UUID is only turned into a String the first
+     * time this user is seen.
+     * 
+     * @param uuid User's UUID
+     * @param node Permission node (e.g., "mypermissions.admin")
+     * @return true if the user has the permission, false otherwise
+     */
+    public boolean hasPermission(UUID uuid, String node) {
+        if (uuid == null || node == null) {
+            return false;
+        }
 
-        if (userData != null) {
-            // 1. Check user-specific permissions first (highest priority)
-            Boolean userPermission = checkPermissionList(userData.getPermissions(), node);
-            if (userPermission != null) {
-                result = userPermission;
-                permissionCache.put(cacheKey, result);
-                return result;
+        CompiledState current = state;
+        ThreadResultCache local = threadCache();
+        if (local != null) {
+            int cached = local.get(uuid, node, current.epoch);
+            if (cached >= 0) {
+                return cached == 1;
             }
+        }
 
-            // 2. Check permissions from user's groups
-            for (String groupName : userData.getGroups()) {
-                Boolean groupPermission = checkGroupPermission(groupName, node, visitedGroups, config);
-                if (groupPermission != null) {
-                    result = groupPermission;
-                    permissionCache.put(cacheKey, result);
-                    return result;
-                }
+        boolean result = hasPermission(current, segmentOf(current, uuid), node);
+        if (local != null) {
+            local.put(uuid, node, current.epoch, result);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if a user has a specific permission, using a handle created once with
+     * {@link PermissionNode#of}. The node name is never hashed or split again.
+     *
+     * @param uuid User's UUID
+     * @param node Permission node handle
+     * @return true if the user has the permission, false otherwise
+     */
+    public boolean hasPermission(UUID uuid, PermissionNode node) {
+        if (uuid == null || node == null) {
+            return false;
+        }
+
+        CompiledState current = state;
+        ThreadResultCache local = threadCache();
+        if (local != null) {
+            int cached = local.get(uuid, node.name(), current.epoch);
+            if (cached >= 0) {
+                return cached == 1;
             }
         }
 
-        // 3. Fall back to default group
-        String defaultGroup = config.getDefaultGroup();
-        Boolean defaultPermission = checkGroupPermission(defaultGroup, node, visitedGroups, config);
-        
-        result = defaultPermission != null && defaultPermission;
-        permissionCache.put(cacheKey, result);
+        UserSegment segment = segmentOf(current, uuid);
+        UserSegment.Entries entries = segment.entries();
+        UserData userData = segment.userData;
+
+        int id = idOf(current, node);
+        EffectivePermissions vector = getEffectivePermissions(current, entries, userData);
+        boolean result = check(current, segment, entries, userData, vector, id, node.name(), node);
+        if (local != null) {
+            local.put(uuid, node.name(), current.epoch, result);
+        }
         return result;
     }
 
     /**
-     * Checks permission in a specific group (with recursive inheritance)
-     * 
-     * @param groupName Group name
-     * @param node Permission node
-     * @param visited Set of already visited groups (prevents loops)
-     * @param config Current configuration
-     * @return true/false if permission found, null if not found
+     * Checks several nodes for the same user, looking the user up only once
+     *
+     * @param uuid User's UUID
+     * @param nodes Permission nodes
+     * @return Bit i is set when nodes[i] is granted
      */
-    private Boolean checkGroupPermission(String groupName, String node, Set<String> visited, MyPermissionsConfig config) {
-        // Prevent infinite loops in inheritance chain
-        if (visited.contains(groupName)) {
-            return null;
+    public BitSet hasPermissions(UUID uuid, String[] nodes) {
+        if (uuid == null || nodes == null) {
+            return new BitSet();
         }
+        BitSet results = new BitSet(nodes.length);
 
-        visited.add(groupName);
+        CompiledState current = state;
+        UserSegment segment = segmentOf(current, uuid);
+        UserSegment.Entries entries = segment.entries();
+        UserData userData = segment.userData;
+        EffectivePermissions vector = getEffectivePermissions(current, entries, userData);
 
-        GroupData group = config.getGroups().get(groupName);
-        if (group == null) {
-            return null;
+        for (int i = 0; i < nodes.length; i++) {
+            String node = nodes[i];
+            if (node == null) {
+                continue;
+            }
+            PermissionNode handle = nodeRegistry.get(node);
+            int id = handle != null ? handle.id(nodeRegistry) : -1;
+            if (check(current, segment, entries, userData, vector, id, node, handle)) {
+                results.set(i);
+            }
         }
+        return results;
+    }
 
-        // 1. Check permissions from the group itself
-        Boolean groupPermission = checkPermissionList(group.getPermissions(), node);
-        if (groupPermission != null) {
-            return groupPermission;
+    /**
+     * Checks every node of a set for the same user, looking the user up only once.
+     * The set's nodes are already interned, so no node name is hashed.
+     *
+     * @param uuid User's UUID
+     * @param nodes Node set
+     * @return Bit i is set when the i-th node of the set is granted
+     */
+    public long hasPermissions(UUID uuid, NodeSet nodes) {
+        if (uuid == null || nodes == null) {
+            return 0L;
         }
 
-        // 2. Check permissions from parent groups (recursive inheritance)
-        for (String parentGroup : group.getParents()) {
-            Boolean parentPermission = checkGroupPermission(parentGroup, node, visited, config);
-            if (parentPermission != null) {
-                return parentPermission;
+        CompiledState current = state;
+        UserSegment segment = segmentOf(current, uuid);
+        UserSegment.Entries entries = segment.entries();
+        UserData userData = segment.userData;
+        EffectivePermissions vector = getEffectivePermissions(current, entries, userData);
+
+        long results = 0L;
+        for (int i = 0; i < nodes.size(); i++) {
+            PermissionNode node = nodes.get(i);
+            if (check(current, segment, entries, userData, vector, idOf(current, node), node.name(), node)) {
+                results |= 1L << i;
             }
         }
+        return results;
+    }
 
-        return null;
+    /**
+     * Gets a handle's node ID. Handles are only interned once some list could grant
+     * them, so probes for nodes nobody has don't fill the registry
+     *
+     * @return The node's ID, or -1 if it isn't interned
+     */
+    private int idOf(CompiledState current, PermissionNode node) {
+        if (node.isInterned(nodeRegistry) || current.grants.mayGrant(node)) {
+            return node.id(nodeRegistry);
+        }
+        return -1;
+    }
+
+    private boolean hasPermission(CompiledState current, UserSegment segment, String node) {
+        UserSegment.Entries entries = segment.entries();
+        UserData userData = segment.userData;
+
+        PermissionNode handle = nodeRegistry.get(node);
+        int id = handle != null ? handle.id(nodeRegistry) : -1;
+        EffectivePermissions vector = getEffectivePermissions(current, entries, userData);
+        return check(current, segment, entries, userData, vector, id, node, handle);
     }
 
     /**
-     * Checks if a permission list contains the requested node
-     * Supports wildcards and negated permissions
-     * 
-     * @param permissions Permission list
-     * @param node Permission node to search for
-     * @return true if allowed, false if denied, null if not found
+     * Checks one node for an already looked up user
+     *
+     * @param vector Ruleset's bitsets
+     * @param id Node ID, or -1 if the node isn't interned
+     * @param handle Node handle, or null if the node isn't interned yet
      */
-    private Boolean checkPermissionList(List<String> permissions, String node) {
-        if (permissions == null || permissions.isEmpty()) {
-            return null;
+    private boolean check(CompiledState current, UserSegment segment, UserSegment.Entries entries,
+                          UserData userData, EffectivePermissions vector, int id, String node, PermissionNode handle) {
+        // Known nodes, and any node of a superuser or rule-less ruleset, are answered
+        // straight from the ruleset's bitsets, resolved the first time they are checked
+        if (vector.covers(id)) {
+            int known = vector.get(id);
+            if (known == EffectivePermissions.UNRESOLVED) {
+                known = resolveInto(current, entries, userData, vector, id, handle);
+            }
+            return known == EffectivePermissions.ALLOWED;
         }
 
-        // Check exact negated permission first (highest priority)
-        if (permissions.contains("-" + node)) {
+        // Nodes nobody can be granted never reach the cache or the chain
+        if (!(handle != null ? current.grants.mayGrant(handle) : current.grants.mayGrant(node))) {
             return false;
         }
 
-        // Check exact permission match
-        if (permissions.contains(node)) {
-            return true;
+        // Check cache first for performance
+        ResultCache.Entry cached = entries.results.get(node);
+        if (cached != null) {
+            resultCache.recordHit(cached);
+            return cached.allowed;
         }
 
-        // Check full wildcard permission
-        if (permissions.contains("*")) {
-            return true;
+        // Intern lazily so the next rebuild of the bitsets covers this node too
+        if (handle == null) {
+            handle = nodeRegistry.intern(node);
+            if (handle == null) {
+                handle = PermissionNode.of(node);
+            }
         }
 
-        for (String permission : permissions) {
-            boolean isNegation = permission.startsWith("-");
-            String permNode = isNegation ? permission.substring(1) : permission;
-
-            // Check partial wildcard (e.g., "mypermissions.*" covers "mypermissions.admin")
-            if (permNode.endsWith(".*")) {
-                String prefix = permNode.substring(0, permNode.length() - 2);
-                if (node.startsWith(prefix + ".") || node.equals(prefix)) {
-                    return !isNegation;
+        // Concurrent misses for this node wait for one resolution. A result computed
+        // against a superseded epoch is returned but never cached; if the epoch moved
+        // while it was being stored, it is taken back out
+        PermissionNode resolving = handle;
+        boolean[] result = new boolean[1];
+        ResultCache.Entry entry = resultCache.computeIfAbsent(entries, segment.key.hashCode(), node, key -> {
+            Boolean resolved = resolve(current, entries, userData, resolving);
+            result[0] = resolved != null && resolved;
+            return isCurrent(current) ? result[0] : null;
+        });
+        if (entry == null) {
+            return result[0];
+        }
+        if (!isCurrent(current)) {
+            entries.results.remove(node, entry);
+        }
+        return entry.allowed;
+    }
+
+    /**
+     * Re-resolves, in the background, what recently seen users checked under the
+     * previous state: their rulesets' bitsets and the results hit since the last
+     * CLOCK sweep. Stops as soon as the state is replaced again.
+     *
+     * @param previous State that was just dropped as a whole
+     */
+    private void rewarm(CompiledState previous) {
+        if (previous == null || previous.segments.isEmpty()) {
+            return;
+        }
+        CompiledState target = state;
+        try {
+            rewarmer.execute(() -> {
+                Set<RulesetKey> seen = new HashSet<>();
+                int budget = REWARM_LIMIT;
+                Iterator<UserLink> recent = Stream.concat(previous.linksByUuid.values().stream(), previous.links.values().stream()).iterator();
+                while (recent.hasNext() && budget > 0 && isCurrent(target)) {
+                    UserLink link = recent.next();
+                    UserData userData = link.userData();
+                    // Only links still valid in the target, so the ruleset is indexed there
+                    if (target.config.getUsers().get(link.uuid()) != userData || !seen.add(link.key())) {
+                        continue;
+                    }
+                    UserSegment hot = previous.segments.get(link.key());
+                    if (hot == null) {
+                        continue;
+                    }
+
+                    UserSegment segment = target.segment(link.key(), userData);
+                    UserSegment.Entries entries = segment.entries();
+                    EffectivePermissions vector = getEffectivePermissions(target, entries, userData);
+                    for (ResultCache.Entry result : hot.entries().results.values()) {
+                        if (budget <= 0 || !isCurrent(target)) {
+                            break;
+                        }
+                        if (result.referenced) {
+                            budget--;
+                            PermissionNode handle = nodeRegistry.get(result.node);
+                            int id = handle != null ? handle.id(nodeRegistry) : -1;
+                            check(target, segment, entries, userData, vector, id, result.node, handle);
+                        }
+                    }
                 }
-            }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private boolean isCurrent(CompiledState current) {
+        return state.epoch == current.epoch;
+    }
 
-            // Check wildcard in the middle (e.g., "mypermissions.*.admin")
-            if (permNode.contains("*")) {
-                String regex = permNode.replace(".", "\\.").replace("*", ".*");
-                if (node.matches(regex)) {
-                    return !isNegation;
+    /**
+     * Gets (creating if needed) the bitsets of a ruleset
+     */
+    private EffectivePermissions getEffectivePermissions(CompiledState current, UserSegment.Entries entries, UserData userData) {
+        EffectivePermissions vector = entries.vector;
+        if (vector == null) {
+            // Every user of the ruleset may miss at once; only one builds the bitsets
+            synchronized (entries) {
+                vector = entries.vector;
+                if (vector == null) {
+                    vector = buildEffectivePermissions(current, entries, userData);
+                    if (isCurrent(current)) {
+                        entries.vector = vector;
+                    }
                 }
             }
         }
+        return vector;
+    }
+
+    /**
+     * Creates the bitsets of a ruleset, covering every node interned so far; each node
+     * is only resolved once it is checked, so a config change never resolves nodes
+     * nobody asks for. Superuser rulesets ('*' granted, no negation anywhere) and
+     * rulesets without a single rule answer every node the same way, so they skip the
+     * bitsets altogether.
+     */
+    private EffectivePermissions buildEffectivePermissions(CompiledState current, UserSegment.Entries entries, UserData userData) {
+        CompiledPermissions userPermissions = userPermissionsOf(current, entries, userData);
+        CompiledPermissions[] chain = chainOf(current, entries, userData);
+
+        boolean grantsAll = userPermissions.grantsAll();
+        boolean hasRules = userPermissions.hasRules();
+        boolean hasNegations = userPermissions.hasNegations();
+        for (CompiledPermissions groupPermissions : chain) {
+            grantsAll |= groupPermissions.grantsAll();
+            hasRules |= groupPermissions.hasRules();
+            hasNegations |= groupPermissions.hasNegations();
+        }
+        if (grantsAll && !hasNegations) {
+            return EffectivePermissions.ALL;
+        }
+        if (!hasRules) {
+            return EffectivePermissions.NONE;
+        }
+        return new EffectivePermissions(nodeRegistry.size());
+    }
+
+    /**
+     * Resolves an interned node through the chain and keeps the answer in the ruleset's
+     * bitsets. An answer resolved against a superseded epoch is returned but not kept
+     *
+     * @return The node's state (see {@link EffectivePermissions})
+     */
+    private int resolveInto(CompiledState current, UserSegment.Entries entries, UserData userData,
+                            EffectivePermissions vector, int id, PermissionNode node) {
+        int resolved = EffectivePermissions.stateOf(resolve(current, entries, userData, node));
+        if (isCurrent(current)) {
+            vector.set(id, resolved);
+            if (!isCurrent(current)) {
+                vector.clear(id, resolved);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolves a node for a user through the full chain:
+     * user permissions, then the user's groups, then the default group
+     *
+     * @return true/false if permission found, null if not found
+     */
+    private Boolean resolve(CompiledState current, UserSegment.Entries entries, UserData userData, PermissionNode node) {
+        // 1. Check user-specific permissions first (highest priority)
+        Boolean userPermission = userPermissionsOf(current, entries, userData).check(node);
+        if (userPermission != null) {
+            return userPermission;
+        }
 
+        // 2. Check the user's groups, then the default group, with everything they
+        // inherit already linearized into one chain
+        for (CompiledPermissions groupPermissions : chainOf(current, entries, userData)) {
+            Boolean groupPermission = groupPermissions.check(node);
+            if (groupPermission != null) {
+                return groupPermission;
+            }
+        }
         return null;
     }
 
+    /**
+     * Gets (compiling if needed) the user's own permission list
+     */
+    private CompiledPermissions userPermissionsOf(CompiledState current, UserSegment.Entries entries, UserData userData) {
+        if (userData == null) {
+            return CompiledPermissions.EMPTY;
+        }
+        CompiledPermissions userPermissions = entries.compiled;
+        if (userPermissions == null) {
+            userPermissions = CompiledPermissions.compile(userData.getPermissions());
+            if (isCurrent(current)) {
+                entries.compiled = userPermissions;
+            }
+        }
+        return userPermissions;
+    }
+
+    /**
+     * Gets (linearizing if needed) the user's groups and the default group
+     */
+    private CompiledPermissions[] chainOf(CompiledState current, UserSegment.Entries entries, UserData userData) {
+        if (userData == null) {
+            return current.hierarchy.chainOf(current.config.getDefaultGroup());
+        }
+        CompiledPermissions[] chain = entries.chain;
+        if (chain == null) {
+            chain = current.hierarchy.chainOf(userData.getGroups(), current.config.getDefaultGroup());
+            if (isCurrent(current)) {
+                entries.chain = chain;
+            }
+        }
+        return chain;
+    }
+
     /**
      * Adds a user to a group
      * 
@@ -175,25 +935,20 @@ public class PermissionManager {
      * @return true if successfully added
      */
     public boolean addUserToGroup(String uuid, String groupName) {
-        MyPermissionsConfig config = Main.getConfig();
-        
-        // Check if the group exists
-        if (!config.getGroups().containsKey(groupName)) {
-            return false;
-        }
+        return Main.getConfigManager().update(config -> {
+            // Check if the group exists
+            if (!config.getGroups().containsKey(groupName)) {
+                return false;
+            }
 
-        // Get or create UserData
-        UserData userData = config.getUsers().computeIfAbsent(uuid, k -> new UserData());
-        
-        // Add group if not already present
-        if (!userData.getGroups().contains(groupName)) {
+            // Add group if not already present
+            UserData userData = config.editOrCreateUser(uuid);
+            if (userData.getGroups().contains(groupName)) {
+                return false;
+            }
             userData.getGroups().add(groupName);
-            clearCache();
-            Main.getConfigManager().save();
             return true;
-        }
-
-        return false;
+        });
     }
 
     /**
@@ -204,16 +959,10 @@ public class PermissionManager {
      * @return true se removido com sucesso
      */
     public boolean removeUserFromGroup(String uuid, String groupName) {
-        MyPermissionsConfig config = Main.getConfig();
-        UserData userData = config.getUsers().get(uuid);
-
-        if (userData != null && userData.getGroups().remove(groupName)) {
-            clearCache();
-            Main.getConfigManager().save();
-            return true;
-        }
-
-        return false;
+        return Main.getConfigManager().update(config -> {
+            UserData userData = config.editUser(uuid);
+            return userData != null && userData.getGroups().remove(groupName);
+        });
     }
 
     /**
@@ -223,14 +972,14 @@ public class PermissionManager {
      * @param permission Permissão a adicionar
      */
     public void addUserPermission(String uuid, String permission) {
-        MyPermissionsConfig config = Main.getConfig();
-        UserData userData = config.getUsers().computeIfAbsent(uuid, k -> new UserData());
-        
-        if (!userData.getPermissions().contains(permission)) {
+        Main.getConfigManager().update(config -> {
+            UserData userData = config.editOrCreateUser(uuid);
+            if (userData.getPermissions().contains(permission)) {
+                return false;
+            }
             userData.getPermissions().add(permission);
-            clearCache();
-            Main.getConfigManager().save();
-        }
+            return true;
+        });
     }
 
     /**
@@ -240,13 +989,10 @@ public class PermissionManager {
      * @param permission Permissão a remover
      */
     public void removeUserPermission(String uuid, String permission) {
-        MyPermissionsConfig config = Main.getConfig();
-        UserData userData = config.getUsers().get(uuid);
-
-        if (userData != null && userData.getPermissions().remove(permission)) {
-            clearCache();
-            Main.getConfigManager().save();
-        }
+        Main.getConfigManager().update(config -> {
+            UserData userData = config.editUser(uuid);
+            return userData != null && userData.getPermissions().remove(permission);
+        });
     }
 
     /**
@@ -257,60 +1003,91 @@ public class PermissionManager {
      */
     public Set<String> getUserGroups(String uuid) {
         Set<String> allGroups = new LinkedHashSet<>();
-        MyPermissionsConfig config = Main.getConfig();
-        UserData userData = config.getUsers().get(uuid);
+        CompiledState current = state;
+        UserData userData = current.config.getUsers().get(uuid);
 
         if (userData != null) {
             for (String groupName : userData.getGroups()) {
-                collectGroupHierarchy(groupName, allGroups, new HashSet<>(), config);
+                allGroups.addAll(current.hierarchy.lineageOf(groupName));
             }
         } else {
             // Include default group
-            collectGroupHierarchy(config.getDefaultGroup(), allGroups, new HashSet<>(), config);
+            allGroups.addAll(current.hierarchy.lineageOf(current.config.getDefaultGroup()));
         }
 
         return allGroups;
     }
 
     /**
-     * Recursively collects all groups in the hierarchy
+     * Clears the permission cache by moving to a new epoch. Results still being
+     * computed under the old epoch are not cached, and recently hot results are
+     * re-resolved in the background
      */
-    private void collectGroupHierarchy(String groupName, Set<String> result, Set<String> visited, MyPermissionsConfig config) {
-        if (visited.contains(groupName)) {
-            return;
-        }
-
-        visited.add(groupName);
-        result.add(groupName);
-
-        GroupData group = config.getGroups().get(groupName);
-        if (group != null) {
-            for (String parent : group.getParents()) {
-                collectGroupHierarchy(parent, result, visited, config);
-            }
-        }
+    public synchronized void clearCache() {
+        CompiledState current = state;
+        state = new CompiledState(epochs.incrementAndGet(), current.config, current.groups, current.hierarchy, current.grants);
+        resultCache.clear();
+        rewarm(current);
     }
 
     /**
-     * Clears the permission cache
+     * Clears the permission cache for a specific user, along with every user that
+     * shares the same ruleset. Moves to a new epoch that keeps the other segments,
+     * so per-thread and tick results computed before the clear are dropped too
      */
-    public void clearCache() {
-        permissionCache.clear();
+    public synchronized void clearCache(UUID uuid) {
+        if (uuid == null) return;
+        CompiledState current = state;
+        CompiledState next = new CompiledState(epochs.incrementAndGet(), current.config, current.groups,
+            current.hierarchy, current.grants, current);
+        state = next;
+        segmentOf(next, uuid).invalidate();
     }
 
     /**
-     * Clears the permission cache for a specific user
+     * Drops what is kept per player once they disconnect: their display profile and
+     * the link to their ruleset. Both are rebuilt on the next lookup.
+     *
+     * @param uuid User's UUID
      */
-    public void clearCache(UUID uuid) {
+    public void forgetPlayer(UUID uuid) {
         if (uuid == null) return;
-        permissionCache.entrySet().removeIf(entry -> entry.getKey().startsWith(uuid.toString() + ":"));
+        String key = uuid.toString();
+        displayProfiles.remove(key);
+        CompiledState current = state;
+        if (current != null) {
+            current.unlink(key);
+        }
     }
 
     /**
      * Clears all permission cache (alias for clearCache)
      */
     public void clearAllCache() {
-        permissionCache.clear();
+        clearCache();
+    }
+
+    /**
+     * Gets how a user is shown in chat; resolved once, then kept until the user's
+     * data or the display of one of their groups changes
+     *
+     * @param uuid User's UUID
+     * @return User's display profile
+     */
+    public DisplayProfile getDisplayProfile(String uuid) {
+        DisplayProfile profile = displayProfiles.get(uuid);
+        if (profile != null) {
+            return profile;
+        }
+
+        CompiledState current = state;
+        profile = DisplayProfile.of(uuid, current.config);
+        displayProfiles.put(uuid, profile);
+        if (!isCurrent(current)) {
+            // Resolved against a snapshot the invalidation may already have passed
+            displayProfiles.remove(uuid, profile);
+        }
+        return profile;
     }
 
     /**
@@ -320,23 +1097,7 @@ public class PermissionManager {
      * @return User's prefix
      */
     public String getUserPrefix(String uuid) {
-        MyPermissionsConfig config = Main.getConfig();
-        UserData userData = config.getUsers().get(uuid);
-
-        if (userData != null && !userData.getGroups().isEmpty()) {
-            // Find group with highest priority
-            String highestPriorityGroup = getHighestPriorityGroup(userData.getGroups(), config);
-            if (highestPriorityGroup != null) {
-                GroupData group = config.getGroups().get(highestPriorityGroup);
-                if (group != null && group.getPrefix() != null && !group.getPrefix().isEmpty()) {
-                    return group.getPrefix();
-                }
-            }
-        }
-
-        // Return default group prefix
-        GroupData defaultGroup = config.getGroups().get(config.getDefaultGroup());
-        return defaultGroup != null && defaultGroup.getPrefix() != null ? defaultGroup.getPrefix() : "";
+        return getDisplayProfile(uuid).prefix();
     }
 
     /**
@@ -346,47 +1107,6 @@ public class PermissionManager {
      * @return User's suffix
      */
     public String getUserSuffix(String uuid) {
-        MyPermissionsConfig config = Main.getConfig();
-        UserData userData = config.getUsers().get(uuid);
-
-        if (userData != null && !userData.getGroups().isEmpty()) {
-            // Find group with highest priority
-            String highestPriorityGroup = getHighestPriorityGroup(userData.getGroups(), config);
-            if (highestPriorityGroup != null) {
-                GroupData group = config.getGroups().get(highestPriorityGroup);
-                if (group != null && group.getSuffix() != null && !group.getSuffix().isEmpty()) {
-                    return group.getSuffix();
-                }
-            }
-        }
-
-        // Return default group suffix
-        GroupData defaultGroup = config.getGroups().get(config.getDefaultGroup());
-        return defaultGroup != null && defaultGroup.getSuffix() != null ? defaultGroup.getSuffix() : "";
-    }
-
-    /**
-     * Gets the highest priority group from a list of groups
-     * 
-     * @param groups List of group names
-     * @param config Current configuration
-     * @return Name of the highest priority group, or null if none exist
-     */
-    private String getHighestPriorityGroup(List<String> groups, MyPermissionsConfig config) {
-        String highestGroup = null;
-        int highestPriority = Integer.MIN_VALUE;
-
-        for (String groupName : groups) {
-            GroupData groupData = config.getGroups().get(groupName);
-            if (groupData != null) {
-                int priority = groupData.getPriority();
-                if (priority > highestPriority) {
-                    highestPriority = priority;
-                    highestGroup = groupName;
-                }
-            }
-        }
-
-        return highestGroup;
+        return getDisplayProfile(uuid).suffix();
     }
 }
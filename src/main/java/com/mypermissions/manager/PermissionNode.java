@@ -0,0 +1,97 @@
+package com.mypermissions.manager;
+
+import java.util.Objects;
+
+/**
+ * A permission node prepared once for repeated checks.
+ *
+ * Plugins that check the same node over and over should create the handle once and
+ * keep it, e.g. in a static field:
+ * <pre>
+ * private static final PermissionNode FLY = PermissionNode.of("myplugin.fly");
+ * </pre>
+ * The node is split into its '.'-separated segments up front and interned on first
+ * use, so checking the handle skips hashing and splitting the node name.
+ */
+public final class PermissionNode {
+
+    private final String node;
+    private final String[] segments;
+
+    // Node ID, tied to the registry that assigned it (-1 once that registry was full)
+    private volatile Interned interned;
+
+    private record Interned(NodeRegistry registry, int id) {
+    }
+
+    private PermissionNode(String node) {
+        this.node = node;
+        this.segments = node.split("\\.", -1);
+    }
+
+    /**
+     * Creates a handle for a permission node
+     *
+     * @param node Permission node (e.g., "myplugin.fly")
+     * @return The handle
+     */
+    public static PermissionNode of(String node) {
+        return new PermissionNode(Objects.requireNonNull(node, "node"));
+    }
+
+    /**
+     * Creates the registry's own handle for a node it just assigned an ID
+     */
+    static PermissionNode interned(String node, NodeRegistry registry, int id) {
+        PermissionNode handle = new PermissionNode(node);
+        handle.interned = new Interned(registry, id);
+        return handle;
+    }
+
+    public String name() {
+        return node;
+    }
+
+    String[] segments() {
+        return segments;
+    }
+
+    /**
+     * Gets the node ID, interning the node on first use
+     *
+     * @param registry Registry of the permission manager checking the node
+     * @return The node's ID, or -1 if the registry is full
+     */
+    int id(NodeRegistry registry) {
+        Interned current = interned;
+        if (current == null || current.registry() != registry) {
+            PermissionNode handle = registry.intern(node);
+            current = new Interned(registry, handle != null ? handle.id(registry) : -1);
+            interned = current;
+        }
+        return current.id();
+    }
+
+    /**
+     * Checks whether the node already has an ID from a registry, without interning it
+     */
+    boolean isInterned(NodeRegistry registry) {
+        Interned current = interned;
+        return current != null && current.registry() == registry;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PermissionNode other && node.equals(other.node);
+    }
+
+    @Override
+    public int hashCode() {
+        return node.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return node;
+    }
+}
@@ -0,0 +1,233 @@
+package com.mypermissions.manager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable segment trie built from a permission list.
+ * Each node is keyed by one '.'-separated segment and carries terminal flags for:
+ * - Exact grants (permission.node)
+ * - Exact negations (-permission.node)
+ * - Trailing wildcards (permission.*), remembering the list index of the first rule
+ *
+ * Lookups walk the node's segments without allocating, so the cost is O(segments)
+ * regardless of how many rules the list contains.
+ */
+final class PermissionTrie {
+
+    /** Marker for "no wildcard rule matched" */
+    static final int NO_MATCH = Integer.MAX_VALUE;
+
+    static final int EXACT_NONE = 0;
+    static final int EXACT_GRANT = 1;
+    static final int EXACT_DENY = 2;
+
+    private final Node root;
+
+    private PermissionTrie(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Walks the trie for the given node
+     *
+     * @param node Permission node to search for
+     * @return Packed result: high 32 bits hold the exact state (EXACT_*),
+     *         low 32 bits hold the best trailing wildcard rule as (index << 1 | negated), or NO_MATCH
+     */
+    long match(String node) {
+        int bestWildcard = NO_MATCH;
+        Node current = root;
+        int start = 0;
+        int length = node.length();
+
+        while (current != null) {
+            int end = node.indexOf('.', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            current = current.child(node, start, end);
+            if (current == null) {
+                break;
+            }
+
+            // "prefix.*" covers both "prefix" itself and anything below it
+            if (current.wildcardRule < bestWildcard) {
+                bestWildcard = current.wildcardRule;
+            }
+
+            if (end == length) {
+                return ((long) current.exactState() << 32) | (bestWildcard & 0xFFFFFFFFL);
+            }
+            start = end + 1;
+        }
+
+        return ((long) EXACT_NONE << 32) | (bestWildcard & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Walks the trie for an already split node, see {@link #match(String)}
+     */
+    long match(PermissionNode node) {
+        int bestWildcard = NO_MATCH;
+        Node current = root;
+        String[] segments = node.segments();
+
+        for (int i = 0; i < segments.length; i++) {
+            current = current.child(segments[i]);
+            if (current == null) {
+                break;
+            }
+
+            if (current.wildcardRule < bestWildcard) {
+                bestWildcard = current.wildcardRule;
+            }
+
+            if (i == segments.length - 1) {
+                return ((long) current.exactState() << 32) | (bestWildcard & 0xFFFFFFFFL);
+            }
+        }
+
+        return ((long) EXACT_NONE << 32) | (bestWildcard & 0xFFFFFFFFL);
+    }
+
+    static int exactState(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    static int wildcardRule(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Mutable builder, frozen into an immutable trie by {@link #build()}
+     */
+    static final class Builder {
+        private final BuilderNode root = new BuilderNode();
+
+        void addExact(String path, boolean negated) {
+            BuilderNode node = walk(path);
+            if (negated) {
+                node.exactDeny = true;
+            } else {
+                node.exactGrant = true;
+            }
+        }
+
+        void addWildcard(String prefix, int index, boolean negated) {
+            BuilderNode node = walk(prefix);
+            int rule = (index << 1) | (negated ? 1 : 0);
+            if (rule < node.wildcardRule) {
+                node.wildcardRule = rule;
+            }
+        }
+
+        private BuilderNode walk(String path) {
+            BuilderNode node = root;
+            int start = 0;
+            while (true) {
+                int end = path.indexOf('.', start);
+                String segment = end < 0 ? path.substring(start) : path.substring(start, end);
+                node = node.children.computeIfAbsent(segment, k -> new BuilderNode());
+                if (end < 0) {
+                    return node;
+                }
+                start = end + 1;
+            }
+        }
+
+        PermissionTrie build() {
+            return new PermissionTrie(root.freeze());
+        }
+    }
+
+    private static final class BuilderNode {
+        final Map<String, BuilderNode> children = new HashMap<>();
+        boolean exactGrant;
+        boolean exactDeny;
+        int wildcardRule = NO_MATCH;
+
+        Node freeze() {
+            int capacity = Integer.highestOneBit(Math.max(1, children.size() * 2 - 1)) << 1;
+            String[] keys = new String[capacity];
+            Node[] nodes = new Node[capacity];
+            int mask = capacity - 1;
+
+            for (Map.Entry<String, BuilderNode> entry : children.entrySet()) {
+                int slot = entry.getKey().hashCode() & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = entry.getKey();
+                nodes[slot] = entry.getValue().freeze();
+            }
+
+            return new Node(children.isEmpty() ? null : keys, nodes, exactGrant, exactDeny, wildcardRule);
+        }
+    }
+
+    /**
+     * Frozen trie node. Children live in an open-addressing table so a segment can be
+     * looked up straight from a range of the node string, without creating a substring.
+     */
+    private static final class Node {
+        private final String[] keys;
+        private final Node[] children;
+        private final boolean exactGrant;
+        private final boolean exactDeny;
+        private final int wildcardRule;
+
+        Node(String[] keys, Node[] children, boolean exactGrant, boolean exactDeny, int wildcardRule) {
+            this.keys = keys;
+            this.children = children;
+            this.exactGrant = exactGrant;
+            this.exactDeny = exactDeny;
+            this.wildcardRule = wildcardRule;
+        }
+
+        int exactState() {
+            // Negation has the highest priority, same as the list scan it replaces
+            if (exactDeny) return EXACT_DENY;
+            if (exactGrant) return EXACT_GRANT;
+            return EXACT_NONE;
+        }
+
+        Node child(String node, int start, int end) {
+            if (keys == null) {
+                return null;
+            }
+
+            // Same formula as String.hashCode, applied to node[start, end)
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + node.charAt(i);
+            }
+
+            int mask = keys.length - 1;
+            int length = end - start;
+            for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key.length() == length && node.regionMatches(start, key, 0, length)) {
+                    return children[slot];
+                }
+            }
+            return null;
+        }
+
+        Node child(String segment) {
+            if (keys == null) {
+                return null;
+            }
+
+            // The segment's String hash is cached after the first lookup
+            int mask = keys.length - 1;
+            for (int slot = segment.hashCode() & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot].equals(segment)) {
+                    return children[slot];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.mypermissions.manager;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Size bound for the check results cached in every {@link UserSegment}, using W-TinyLFU:
+ * - New results enter a small admission window (1% of the cache)
+ * - Results leaving the window only get into the main region if they were requested
+ *   more often than the result they would replace, according to a {@link FrequencySketch}
+ * - Both regions evict with CLOCK: a result requested since the last sweep gets a second chance
+ *
+ * A flood of one-off nodes (plugins probing dynamic names) therefore churns through the
+ * window without pushing out the results that are checked all the time.
+ *
+ * Hits never lock: they only set the result's referenced bit and bump the sketch.
+ * Inserts and evictions happen under a lock, which is only taken on a cache miss.
+ */
+final class ResultCache {
+
+    static final int DEFAULT_MAXIMUM = 100_000;
+
+    // Lowest size memory pressure can shrink the cache to
+    static final int MIN_MAXIMUM = 1024;
+
+    // How many inserts between checks whether a shrunk cache may grow again
+    private static final int RECOVERY_INTERVAL = 4096;
+
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final BooleanSupplier underPressure;
+
+    private ArrayDeque<Entry> window = new ArrayDeque<>();
+    private ArrayDeque<Entry> main = new ArrayDeque<>();
+    private int configuredMaximum;
+    private int maximum;
+    private int insertsSinceRecoveryCheck;
+
+    /**
+     * @param underPressure Tells whether the heap is still short on memory
+     */
+    ResultCache(BooleanSupplier underPressure) {
+        this.underPressure = underPressure;
+        setMaximum(DEFAULT_MAXIMUM);
+    }
+
+    /**
+     * A cached check result, owned by one ruleset's entries
+     */
+    static final class Entry {
+        // Changes when a segment keeps the result across a config change (see UserSegment#retain)
+        volatile UserSegment.Entries owner;
+        final String node;
+        final boolean allowed;
+        final int hash;
+
+        // Set on every hit, cleared by the CLOCK sweep; races only cost a second chance
+        boolean referenced;
+
+        Entry(UserSegment.Entries owner, String node, boolean allowed, int hash) {
+            this.owner = owner;
+            this.node = node;
+            this.allowed = allowed;
+            this.hash = hash;
+        }
+
+        boolean isDead() {
+            return owner.dead || owner.results.get(node) != this;
+        }
+    }
+
+    /**
+     * Records a cache hit
+     */
+    void recordHit(Entry entry) {
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        sketch.increment(entry.hash);
+    }
+
+    /**
+     * Gets a node's cached result, resolving and caching it on a miss; evicts others
+     * if the cache is full. Concurrent misses for the same node of the same ruleset
+     * wait for a single resolution instead of each running their own.
+     *
+     * @param owner Entries of the ruleset the result belongs to
+     * @param ownerHash Hash of that ruleset
+     * @param node Permission node
+     * @param resolver Resolves the node; returning null leaves it uncached
+     * @return The cached entry, or null if the resolver left the node uncached
+     */
+    Entry computeIfAbsent(UserSegment.Entries owner, int ownerHash, String node, Function<String, Boolean> resolver) {
+        Entry[] created = new Entry[1];
+        Entry entry = owner.results.computeIfAbsent(node, key -> {
+            Boolean allowed = resolver.apply(key);
+            if (allowed == null) {
+                return null;
+            }
+            created[0] = new Entry(owner, key, allowed, 31 * ownerHash + key.hashCode());
+            return created[0];
+        });
+        if (entry == null) {
+            return null;
+        }
+        if (created[0] != entry) {
+            // Another check resolved it while this one waited
+            recordHit(entry);
+            return entry;
+        }
+        sketch.increment(entry.hash);
+
+        lock.lock();
+        try {
+            window.addLast(entry);
+            if (maximum < configuredMaximum && ++insertsSinceRecoveryCheck >= RECOVERY_INTERVAL) {
+                insertsSinceRecoveryCheck = 0;
+                if (!underPressure.getAsBoolean()) {
+                    maximum = (int) Math.min(configuredMaximum, maximum * 2L);
+                }
+            }
+            maintain();
+        } finally {
+            lock.unlock();
+        }
+        return entry;
+    }
+
+    /**
+     * Sets the configured maximum number of cached results
+     */
+    void setMaximum(int configured) {
+        lock.lock();
+        try {
+            int value = Math.max(1, configured);
+            boolean shrunk = maximum < configuredMaximum;
+            configuredMaximum = value;
+            maximum = shrunk ? Math.min(maximum, value) : value;
+            sketch.ensureCapacity(value);
+            maintain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Halves the cache because the heap is running full.
+     * It grows back once the pressure is gone.
+     */
+    void shrink() {
+        lock.lock();
+        try {
+            maximum = Math.max(Math.min(MIN_MAXIMUM, configuredMaximum), maximum / 2);
+            insertsSinceRecoveryCheck = 0;
+            maintain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets every tracked result in O(1).
+     * Used when all segments were dropped at once, so no map needs cleaning up.
+     */
+    void clear() {
+        lock.lock();
+        try {
+            window = new ArrayDeque<>();
+            main = new ArrayDeque<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return window.size() + main.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int maximum() {
+        return maximum;
+    }
+
+    private void maintain() {
+        int windowMaximum = Math.max(1, maximum / 100);
+        while (window.size() > windowMaximum) {
+            admit(sweep(window));
+        }
+        while (window.size() + main.size() > maximum) {
+            Entry victim = sweep(main);
+            discard(victim != null ? victim : sweep(window));
+        }
+    }
+
+    /**
+     * Moves a result from the window to the main region if it beats the main region's victim
+     */
+    private void admit(Entry candidate) {
+        if (candidate == null || candidate.isDead()) {
+            discard(candidate);
+            return;
+        }
+        if (window.size() + main.size() < maximum) {
+            main.addLast(candidate);
+            return;
+        }
+
+        Entry victim = sweep(main);
+        if (victim == null) {
+            main.addLast(candidate);
+        } else if (victim.isDead() || sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+            discard(victim);
+            main.addLast(candidate);
+        } else {
+            discard(candidate);
+            main.addLast(victim);
+        }
+    }
+
+    /**
+     * CLOCK sweep: takes the first result that wasn't requested since the last pass
+     */
+    private static Entry sweep(ArrayDeque<Entry> queue) {
+        for (int i = 0, limit = queue.size(); i < limit; i++) {
+            Entry entry = queue.pollFirst();
+            if (!entry.referenced || entry.isDead()) {
+                return entry;
+            }
+            entry.referenced = false;
+            queue.addLast(entry);
+        }
+        return queue.pollFirst();
+    }
+
+    private static void discard(Entry entry) {
+        if (entry != null) {
+            entry.owner.results.remove(entry.node, entry);
+        }
+    }
+}
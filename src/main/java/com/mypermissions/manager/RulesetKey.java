@@ -0,0 +1,59 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.util.List;
+
+/**
+ * Identifies a user's resolved ruleset by the only user data it depends on: the
+ * user's groups and direct permissions, both in order (order decides which rule
+ * wins). Users with equal keys resolve every node the same way, so they share one
+ * {@link UserSegment}.
+ *
+ * Users without data, or with no groups and no permissions, all fall back on the
+ * default group and share {@link #NONE}.
+ */
+final class RulesetKey {
+
+    static final RulesetKey NONE = new RulesetKey(List.of(), List.of());
+
+    private final List<String> groups;
+    private final List<String> permissions;
+    private final int hash;
+
+    private RulesetKey(List<String> groups, List<String> permissions) {
+        this.groups = groups;
+        this.permissions = permissions;
+        this.hash = 31 * groups.hashCode() + permissions.hashCode();
+    }
+
+    /**
+     * Gets the key of a user's data; snapshot lists are immutable, so they are kept as-is
+     *
+     * @param userData User's data (may be null)
+     */
+    static RulesetKey of(UserData userData) {
+        if (userData == null || (userData.getGroups().isEmpty() && userData.getPermissions().isEmpty())) {
+            return NONE;
+        }
+        return new RulesetKey(userData.getGroups(), userData.getPermissions());
+    }
+
+    List<String> groups() {
+        return groups;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof RulesetKey other && hash == other.hash
+            && groups.equals(other.groups) && permissions.equals(other.permissions);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
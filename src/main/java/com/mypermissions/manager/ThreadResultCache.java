@@ -0,0 +1,83 @@
+package com.mypermissions.manager;
+
+/**
+ * Small direct-mapped cache of recent check results, owned by a single thread and
+ * sitting in front of the shared segments. A world thread repeating a check within
+ * a tick answers it from its own arrays, without touching any shared map.
+ *
+ * Every slot remembers the epoch it was filled under; a slot from an older epoch is
+ * simply a miss, so config changes never need to reach into other threads.
+ *
+ * A {@link TickScope} puts its own instance in place of the thread's for as long as
+ * it is open, so everything it memoized is dropped with it.
+ */
+final class ThreadResultCache {
+
+    // Bounds the configured size so a typo can't allocate huge arrays per thread
+    static final int MAX_SIZE = 4096;
+
+    private final Object[] users;
+    private final String[] nodes;
+    private final long[] epochs;
+    private final boolean[] results;
+    private final int mask;
+
+    // Belongs to an open tick scope rather than to the thread
+    final boolean scoped;
+
+    /**
+     * @param size Number of slots, a power of two
+     * @param scoped Whether the cache belongs to a tick scope
+     */
+    ThreadResultCache(int size, boolean scoped) {
+        this.scoped = scoped;
+        users = new Object[size];
+        nodes = new String[size];
+        epochs = new long[size];
+        results = new boolean[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Rounds a configured size to the slot count to use, 0 meaning disabled
+     */
+    static int slotsFor(int configured) {
+        if (configured <= 0) {
+            return 0;
+        }
+        return Integer.highestOneBit(Math.min(configured, MAX_SIZE) * 2 - 1);
+    }
+
+    int size() {
+        return users.length;
+    }
+
+    /**
+     * Looks up a result
+     *
+     * @param user User's UUID, as the caller passed it (UUID or String)
+     * @param node Permission node
+     * @param epoch Epoch of the state the caller checks against
+     * @return 1 if allowed, 0 if denied, -1 if not cached under that epoch
+     */
+    int get(Object user, String node, long epoch) {
+        int slot = slot(user, node);
+        if (epochs[slot] != epoch || !node.equals(nodes[slot]) || !user.equals(users[slot])) {
+            return -1;
+        }
+        return results[slot] ? 1 : 0;
+    }
+
+    void put(Object user, String node, long epoch, boolean allowed) {
+        int slot = slot(user, node);
+        users[slot] = user;
+        nodes[slot] = node;
+        epochs[slot] = epoch;
+        results[slot] = allowed;
+    }
+
+    private int slot(Object user, String node) {
+        int hash = 31 * user.hashCode() + node.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
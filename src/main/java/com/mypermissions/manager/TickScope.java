@@ -0,0 +1,43 @@
+package com.mypermissions.manager;
+
+/**
+ * Memoizes the permission checks made by one thread while it is open, e.g. for one
+ * game tick or one command. Repeated identical checks inside the scope cost a single
+ * array probe and never touch the shared cache. Everything is dropped on close.
+ *
+ * <pre>
+ * try (TickScope scope = Main.getPermissionManager().openTickScope()) {
+ *     // every hasPermission(UUID, ...) on this thread is memoized here
+ * }
+ * </pre>
+ *
+ * Scopes are bound to the thread that opened them and may be nested; close them on
+ * that thread, innermost first. A config change during the scope is still honored:
+ * results memoized under the previous config no longer match.
+ */
+public final class TickScope implements AutoCloseable {
+
+    // Slots of the scope's memo; colliding checks simply resolve again
+    static final int SLOTS = 1024;
+
+    private final PermissionManager manager;
+    final ThreadResultCache results = new ThreadResultCache(SLOTS, true);
+
+    // What the thread used before the scope opened, restored on close
+    final ThreadResultCache previous;
+
+    private boolean closed;
+
+    TickScope(PermissionManager manager, ThreadResultCache previous) {
+        this.manager = manager;
+        this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            manager.closeTickScope(this);
+            closed = true;
+        }
+    }
+}
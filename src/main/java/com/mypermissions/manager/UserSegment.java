@@ -0,0 +1,77 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Everything cached for one resolved ruleset: the compiled user list, the resolved
+ * bitsets and the results of individual checks. Every user with the same groups and
+ * permissions (see {@link RulesetKey}) shares one segment, so most players share both
+ * the memory and the warm cache.
+ *
+ * The cached data lives in one {@link Entries} object, so invalidating the ruleset is a
+ * single reference swap no matter how many nodes were cached. A check still holding
+ * the old entries only ever writes into an object nobody reads anymore.
+ */
+final class UserSegment {
+
+    final RulesetKey key;
+
+    // Data of any user with this ruleset; they are all equal where it matters
+    final UserData userData;
+
+    private volatile Entries entries = new Entries();
+
+    UserSegment(RulesetKey key, UserData userData) {
+        this.key = key;
+        this.userData = userData;
+    }
+
+    Entries entries() {
+        return entries;
+    }
+
+    /**
+     * Drops everything cached for this ruleset in O(1)
+     */
+    void invalidate() {
+        Entries previous = entries;
+        entries = new Entries();
+        // Lets the result cache evict the old results first
+        previous.dead = true;
+    }
+
+    /**
+     * Creates the segment for the next snapshot, keeping only the cached results a
+     * config change can't have affected. The bitsets start over empty.
+     * This segment keeps serving checks that still run against the previous snapshot.
+     *
+     * @param affected Tells whether a cached node may resolve differently now
+     * @return New segment for the same ruleset
+     */
+    UserSegment retain(Predicate<String> affected) {
+        Entries previous = entries;
+        UserSegment next = new UserSegment(key, userData);
+        next.entries.compiled = previous.compiled;
+        for (ResultCache.Entry result : previous.results.values()) {
+            if (!affected.test(result.node)) {
+                result.owner = next.entries;
+                next.entries.results.put(result.node, result);
+            }
+        }
+        previous.dead = true;
+        return next;
+    }
+
+    static final class Entries {
+        final Map<String, ResultCache.Entry> results = new ConcurrentHashMap<>();
+        volatile CompiledPermissions compiled;
+        // Ruleset's groups and the default group, linearized (see GroupHierarchy)
+        volatile CompiledPermissions[] chain;
+        volatile EffectivePermissions vector;
+        volatile boolean dead;
+    }
+}
@@ -0,0 +1,223 @@
+package com.mypermissions.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Combined automaton for every mid-node wildcard rule of a permission list
+ * (e.g., "mypermissions.*.admin", "-plugin.*.fly").
+ *
+ * All rules are laid out side by side in one bit-parallel NFA (Shift-And), so a single
+ * pass over the node's characters answers every rule at once. A '*' matches any run of
+ * characters, dots included, just like the ".*" regex it replaces. When several rules
+ * match, the one that comes first in the list wins.
+ */
+final class WildcardAutomaton {
+
+    static final WildcardAutomaton EMPTY = new Builder().build();
+
+    private final int words;
+    private final long[] start;
+    private final long[] starBefore;
+    private final long[] starAfter;
+    private final long[] accept;
+    private final int[] ruleAtBit;
+    private final char[] alphabet;
+    private final int[] asciiIndex;
+    private final long[][] charMasks;
+
+    private WildcardAutomaton(int words, long[] start, long[] starBefore, long[] starAfter, long[] accept,
+                              int[] ruleAtBit, char[] alphabet, int[] asciiIndex, long[][] charMasks) {
+        this.words = words;
+        this.start = start;
+        this.starBefore = starBefore;
+        this.starAfter = starAfter;
+        this.accept = accept;
+        this.ruleAtBit = ruleAtBit;
+        this.alphabet = alphabet;
+        this.asciiIndex = asciiIndex;
+        this.charMasks = charMasks;
+    }
+
+    boolean isEmpty() {
+        return words == 0;
+    }
+
+    /**
+     * Runs every rule against the node in one pass
+     *
+     * @param node Permission node
+     * @return The first matching rule as (index << 1 | negated), or {@link PermissionTrie#NO_MATCH}
+     */
+    int match(String node) {
+        if (words == 0) {
+            return PermissionTrie.NO_MATCH;
+        }
+        if (words == 1) {
+            return matchSingleWord(node);
+        }
+
+        long[] state = start.clone();
+        long[] next = new long[words];
+
+        for (int i = 0; i < node.length(); i++) {
+            int symbol = symbolOf(node.charAt(i));
+            long carry = 0;
+            for (int w = 0; w < words; w++) {
+                long current = state[w];
+                long shifted = (current << 1) | carry;
+                carry = current >>> 63;
+                long mask = symbol < 0 ? 0 : charMasks[symbol][w];
+                next[w] = (shifted & mask) | (current & starAfter[w]);
+            }
+
+            long alive = 0;
+            carry = 0;
+            for (int w = 0; w < words; w++) {
+                long empty = next[w] & starBefore[w];
+                next[w] |= (empty << 1) | carry;
+                carry = empty >>> 63;
+                alive |= next[w];
+            }
+            if (alive == 0) {
+                return PermissionTrie.NO_MATCH;
+            }
+
+            long[] swap = state;
+            state = next;
+            next = swap;
+        }
+
+        for (int w = 0; w < words; w++) {
+            long matched = state[w] & accept[w];
+            if (matched != 0) {
+                return ruleAtBit[w * 64 + Long.numberOfTrailingZeros(matched)];
+            }
+        }
+        return PermissionTrie.NO_MATCH;
+    }
+
+    /**
+     * Allocation-free path for the common case where every rule fits in 64 states
+     */
+    private int matchSingleWord(String node) {
+        long state = start[0];
+        long before = starBefore[0];
+        long after = starAfter[0];
+
+        for (int i = 0; i < node.length() && state != 0; i++) {
+            int symbol = symbolOf(node.charAt(i));
+            long mask = symbol < 0 ? 0 : charMasks[symbol][0];
+            state = ((state << 1) & mask) | (state & after);
+            state |= (state & before) << 1;
+        }
+
+        long matched = state & accept[0];
+        return matched == 0 ? PermissionTrie.NO_MATCH : ruleAtBit[Long.numberOfTrailingZeros(matched)];
+    }
+
+    private int symbolOf(char c) {
+        if (c < 128) {
+            return asciiIndex[c];
+        }
+        int index = Arrays.binarySearch(alphabet, c);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Collects wildcard rules in list order and lays them out as one automaton
+     */
+    static final class Builder {
+        private final List<String> patterns = new ArrayList<>();
+        private final List<Integer> rules = new ArrayList<>();
+
+        /**
+         * @param pattern Wildcard pattern without the negation prefix
+         * @param rule Rule as (index << 1 | negated)
+         */
+        void add(String pattern, int rule) {
+            // Consecutive stars match the same thing as a single one
+            StringBuilder collapsed = new StringBuilder(pattern.length());
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c != '*' || collapsed.length() == 0 || collapsed.charAt(collapsed.length() - 1) != '*') {
+                    collapsed.append(c);
+                }
+            }
+            patterns.add(collapsed.toString());
+            rules.add(rule);
+        }
+
+        WildcardAutomaton build() {
+            // Each rule takes one start bit plus one bit per token
+            int bits = 0;
+            TreeSet<Character> symbols = new TreeSet<>();
+            for (String pattern : patterns) {
+                bits += pattern.length() + 1;
+                for (int i = 0; i < pattern.length(); i++) {
+                    if (pattern.charAt(i) != '*') {
+                        symbols.add(pattern.charAt(i));
+                    }
+                }
+            }
+
+            int words = (bits + 63) >>> 6;
+            long[] start = new long[words];
+            long[] starBefore = new long[words];
+            long[] starAfter = new long[words];
+            long[] accept = new long[words];
+            int[] ruleAtBit = new int[words * 64];
+
+            char[] alphabet = new char[symbols.size()];
+            int symbolCount = 0;
+            for (char c : symbols) {
+                alphabet[symbolCount++] = c;
+            }
+            int[] asciiIndex = new int[128];
+            Arrays.fill(asciiIndex, -1);
+            for (int i = 0; i < alphabet.length; i++) {
+                if (alphabet[i] < 128) {
+                    asciiIndex[alphabet[i]] = i;
+                }
+            }
+            long[][] charMasks = new long[alphabet.length][words];
+
+            int base = 0;
+            for (int r = 0; r < patterns.size(); r++) {
+                String pattern = patterns.get(r);
+                set(start, base);
+                for (int j = 0; j < pattern.length(); j++) {
+                    char c = pattern.charAt(j);
+                    if (c == '*') {
+                        set(starBefore, base + j);
+                        set(starAfter, base + j + 1);
+                    } else {
+                        set(charMasks[Arrays.binarySearch(alphabet, c)], base + j + 1);
+                    }
+                }
+                int acceptBit = base + pattern.length();
+                set(accept, acceptBit);
+                ruleAtBit[acceptBit] = rules.get(r);
+                base = acceptBit + 1;
+            }
+
+            // A leading star can match the empty string straight away
+            for (int w = 0; w < words; w++) {
+                long empty = start[w] & starBefore[w];
+                start[w] |= empty << 1;
+                if (w + 1 < words) {
+                    start[w + 1] |= empty >>> 63;
+                }
+            }
+
+            return new WildcardAutomaton(words, start, starBefore, starAfter, accept,
+                ruleAtBit, alphabet, asciiIndex, charMasks);
+        }
+
+        private static void set(long[] bits, int index) {
+            bits[index >>> 6] |= 1L << (index & 63);
+        }
+    }
+}
@@ -217,6 +217,10 @@ public class EditGroupPage extends InteractiveCustomUIPage<EditGroupPage.EditGro
             showError(ref, store, player, data, "Cannot add group as its own parent");
             return;
         }
+        if (Main.getConfig().inheritsFrom(parentName, originalGroupName)) {
+            showError(ref, store, player, data, "Group '" + parentName + "' already inherits from this group");
+            return;
+        }
 
         parents.add(parentName);
 
@@ -271,62 +275,83 @@ public class EditGroupPage extends InteractiveCustomUIPage<EditGroupPage.EditGro
             return;
         }
 
-        // Get existing group data
-        MyPermissionsConfig.GroupData groupData = Main.getConfig().getGroups().get(originalGroupName);
-        if (groupData == null) {
-            return;
-        }
+        // Apply every edit (and a possible rename) as one change
+        List<String> newParents = new ArrayList<>(parents);
+        boolean saved = Main.getConfigManager().update(config -> {
+            // Get existing group data
+            MyPermissionsConfig.GroupData groupData = config.editGroup(originalGroupName);
+            if (groupData == null
+                || (!newGroupName.equals(originalGroupName) && config.getGroups().containsKey(newGroupName))) {
+                return false;
+            }
 
-        // Update group data
-        if (data.prefix != null && !data.prefix.trim().isEmpty()) {
-            groupData.setPrefix(data.prefix.trim());
-        } else {
-            groupData.setPrefix("");
-        }
+            // Checked against the config being edited, as parents may have changed since they were added
+            for (String parent : newParents) {
+                if (config.inheritsFrom(parent, originalGroupName)) {
+                    return false;
+                }
+            }
 
-        if (data.suffix != null && !data.suffix.trim().isEmpty()) {
-            groupData.setSuffix(data.suffix.trim());
-        } else {
-            groupData.setSuffix("");
-        }
+            // Update group data
+            if (data.prefix != null && !data.prefix.trim().isEmpty()) {
+                groupData.setPrefix(data.prefix.trim());
+            } else {
+                groupData.setPrefix("");
+            }
 
-        if (data.priority != null && !data.priority.trim().isEmpty()) {
-            try {
-                int priority = Integer.parseInt(data.priority.trim());
-                groupData.setPriority(priority);
-            } catch (NumberFormatException e) {
-                // Keep existing priority
+            if (data.suffix != null && !data.suffix.trim().isEmpty()) {
+                groupData.setSuffix(data.suffix.trim());
+            } else {
+                groupData.setSuffix("");
             }
-        }
 
-        groupData.setParents(new ArrayList<>(parents));
+            if (data.priority != null && !data.priority.trim().isEmpty()) {
+                try {
+                    int priority = Integer.parseInt(data.priority.trim());
+                    groupData.setPriority(priority);
+                } catch (NumberFormatException e) {
+                    // Keep existing priority
+                }
+            }
 
-        // If group name changed, rename it
-        if (!newGroupName.equals(originalGroupName)) {
-            Main.getConfig().getGroups().remove(originalGroupName);
-            Main.getConfig().getGroups().put(newGroupName, groupData);
+            groupData.setParents(newParents);
 
-            // Update all users that have this group
-            Main.getConfig().getUsers().values().forEach(userData -> {
-                if (userData.getGroups().remove(originalGroupName)) {
-                    userData.getGroups().add(newGroupName);
+            // If group name changed, rename it
+            if (!newGroupName.equals(originalGroupName)) {
+                config.getGroups().remove(originalGroupName);
+                config.getGroups().put(newGroupName, groupData);
+
+                // Update all users that have this group
+                for (String uuid : new ArrayList<>(config.getUsers().keySet())) {
+                    if (config.getUsers().get(uuid).getGroups().contains(originalGroupName)) {
+                        MyPermissionsConfig.UserData userData = config.editUser(uuid);
+                        userData.getGroups().remove(originalGroupName);
+                        userData.getGroups().add(newGroupName);
+                    }
                 }
-            });
 
-            // Update all groups that have this as parent
-            for (MyPermissionsConfig.GroupData otherGroup : Main.getConfig().getGroups().values()) {
-                if (otherGroup.getParents().remove(originalGroupName)) {
-                    otherGroup.getParents().add(newGroupName);
+                // Update all groups that have this as parent
+                for (String name : new ArrayList<>(config.getGroups().keySet())) {
+                    if (config.getGroups().get(name).getParents().contains(originalGroupName)) {
+                        MyPermissionsConfig.GroupData otherGroup = config.editGroup(name);
+                        otherGroup.getParents().remove(originalGroupName);
+                        otherGroup.getParents().add(newGroupName);
+                    }
                 }
             }
+            return true;
+        });
+
+        if (!saved) {
+            for (String parent : newParents) {
+                if (Main.getConfig().inheritsFrom(parent, originalGroupName)) {
+                    showError(ref, store, player, data, "Group '" + parent + "' already inherits from this group");
+                    return;
+                }
+            }
+            return;
         }
 
-        // Save config
-        Main.getConfigManager().save();
-
-        // Clear cache
-        Main.getPermissionManager().clearAllCache();
-
         // Go back to main page
         MainPage mainPage = new MainPage(playerRef);
         player.getPageManager().openCustomPage(ref, store, mainPage);
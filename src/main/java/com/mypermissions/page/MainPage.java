@@ -1,5 +1,6 @@
 package com.mypermissions.page;
 
+import java.util.ArrayList;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
@@ -215,30 +216,31 @@ public class MainPage extends InteractiveCustomUIPage<MainPage.MainEventData> {
                 // Get default group name
                 String defaultGroup = Main.getConfig().getDefaultGroup();
                 
-                // Remove group from all users and add default group
-                Main.getConfig().getUsers().values().forEach(userData -> {
-                    if (userData.getGroups().remove(groupName)) {
-                        // User had this group, add default if not already present
-                        if (!userData.getGroups().contains(defaultGroup)) {
-                            userData.getGroups().add(defaultGroup);
+                Main.getConfigManager().update(config -> {
+                    // Remove group from all users and add default group
+                    for (String uuid : new ArrayList<>(config.getUsers().keySet())) {
+                        if (config.getUsers().get(uuid).getGroups().contains(groupName)) {
+                            var userData = config.editUser(uuid);
+                            userData.getGroups().remove(groupName);
+                            // User had this group, add default if not already present
+                            if (!userData.getGroups().contains(defaultGroup)) {
+                                userData.getGroups().add(defaultGroup);
+                            }
                         }
                     }
+                    
+                    // Remove this group from all parent lists
+                    for (String name : new ArrayList<>(config.getGroups().keySet())) {
+                        GroupData group = config.getGroups().get(name);
+                        if (group.getParents().contains(groupName)) {
+                            config.editGroup(name).getParents().remove(groupName);
+                        }
+                    }
+                    
+                    // Delete group from config
+                    return config.getGroups().remove(groupName) != null;
                 });
                 
-                // Remove this group from all parent lists
-                for (GroupData group : Main.getConfig().getGroups().values()) {
-                    group.getParents().remove(groupName);
-                }
-                
-                // Delete group from config
-                Main.getConfig().getGroups().remove(groupName);
-                
-                // Clear permission cache
-                Main.getPermissionManager().clearAllCache();
-                
-                // Save config
-                Main.getConfigManager().save();
-                
                 // Refresh page
                 MainPage refreshedPage = new MainPage(playerRef);
                 player.getPageManager().openCustomPage(ref, store, refreshedPage);
@@ -248,7 +250,6 @@ public class MainPage extends InteractiveCustomUIPage<MainPage.MainEventData> {
             case "reload":
                 // Reload config (same as /mpreload command)
                 Main.getConfigManager().reload();
-                Main.getPermissionManager().clearCache();
                 
                 // Refresh page to show updated data with success message
                 MainPage reloadedPage = new MainPage(playerRef, "Configuration reloaded successfully!");
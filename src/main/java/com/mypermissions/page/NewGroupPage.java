@@ -275,14 +275,8 @@ public class NewGroupPage extends InteractiveCustomUIPage<NewGroupPage.NewGroupE
         // Set parents
         groupData.setParents(new ArrayList<>(parents));
 
-        // Add to config
-        Main.getConfig().getGroups().put(groupName, groupData);
-
-        // Save config
-        Main.getConfigManager().save();
-
-        // Clear cache
-        Main.getPermissionManager().clearAllCache();
+        // Add to config and save
+        Main.getConfigManager().update(config -> config.getGroups().putIfAbsent(groupName, groupData) == null);
 
         // Go back to main page
         MainPage mainPage = new MainPage(playerRef);
@@ -151,14 +151,11 @@ public class PermissionsPage extends InteractiveCustomUIPage<PermissionsPage.Per
             return;
         }
 
-        // Add permission
-        groupData.getPermissions().add(permission);
-
-        // Save config
-        Main.getConfigManager().save();
-
-        // Clear cache
-        Main.getPermissionManager().clearAllCache();
+        // Add permission and save config
+        Main.getConfigManager().update(config -> {
+            MyPermissionsConfig.GroupData group = config.editGroup(groupName);
+            return group != null && !group.getPermissions().contains(permission) && group.getPermissions().add(permission);
+        });
 
         // Refresh page
         PermissionsPage refreshed = new PermissionsPage(playerRef, groupName);
@@ -188,14 +185,12 @@ public class PermissionsPage extends InteractiveCustomUIPage<PermissionsPage.Per
 
             List<String> permissions = groupData.getPermissions();
             if (index >= 0 && index < permissions.size()) {
-                // Remove permission
-                permissions.remove(index);
-
-                // Save config
-                Main.getConfigManager().save();
-
-                // Clear cache
-                Main.getPermissionManager().clearAllCache();
+                // Remove permission and save config
+                String permission = permissions.get(index);
+                Main.getConfigManager().update(config -> {
+                    MyPermissionsConfig.GroupData group = config.editGroup(groupName);
+                    return group != null && group.getPermissions().remove(permission);
+                });
 
                 // Refresh page
                 PermissionsPage refreshed = new PermissionsPage(playerRef, groupName);
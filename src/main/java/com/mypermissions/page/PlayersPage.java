@@ -156,13 +156,7 @@ public class PlayersPage extends InteractiveCustomUIPage<PlayersPage.PlayersEven
         }
 
         // Find UUID by username
-        String targetUUID = null;
-        for (Map.Entry<String, MyPermissionsConfig.UserData> entry : Main.getConfig().getUsers().entrySet()) {
-            if (targetPlayerName.equalsIgnoreCase(entry.getValue().getUsername())) {
-                targetUUID = entry.getKey();
-                break;
-            }
-        }
+        String targetUUID = Main.getConfig().getUuidByUsername(targetPlayerName);
 
         // If player not found, show error
         if (targetUUID == null) {
@@ -181,14 +175,11 @@ public class PlayersPage extends InteractiveCustomUIPage<PlayersPage.PlayersEven
             return;
         }
 
-        // Add group to player
-        userData.getGroups().add(groupName);
-
-        // Save config
-        Main.getConfigManager().save();
-
-        // Clear cache
-        Main.getPermissionManager().clearAllCache();
+        // Add group to player and save config
+        Main.getConfigManager().update(config -> {
+            MyPermissionsConfig.UserData user = config.editUser(targetUUID);
+            return user != null && !user.getGroups().contains(groupName) && user.getGroups().add(groupName);
+        });
 
         // Refresh page
         PlayersPage refreshed = new PlayersPage(playerRef, groupName);
@@ -229,20 +220,20 @@ public class PlayersPage extends InteractiveCustomUIPage<PlayersPage.PlayersEven
                 MyPermissionsConfig.UserData userData = Main.getConfig().getUsers().get(targetUUID);
 
                 if (userData != null) {
-                    // Remove group from player
-                    userData.getGroups().remove(groupName);
-
-                    // Add default group if player has no groups
-                    String defaultGroup = Main.getConfig().getDefaultGroup();
-                    if (userData.getGroups().isEmpty() && !userData.getGroups().contains(defaultGroup)) {
-                        userData.getGroups().add(defaultGroup);
-                    }
-
-                    // Save config
-                    Main.getConfigManager().save();
-
-                    // Clear cache
-                    Main.getPermissionManager().clearAllCache();
+                    Main.getConfigManager().update(config -> {
+                        // Remove group from player
+                        MyPermissionsConfig.UserData user = config.editUser(targetUUID);
+                        if (user == null || !user.getGroups().remove(groupName)) {
+                            return false;
+                        }
+
+                        // Add default group if player has no groups
+                        String defaultGroup = config.getDefaultGroup();
+                        if (user.getGroups().isEmpty() && !user.getGroups().contains(defaultGroup)) {
+                            user.getGroups().add(defaultGroup);
+                        }
+                        return true;
+                    });
                 }
 
                 // Refresh page
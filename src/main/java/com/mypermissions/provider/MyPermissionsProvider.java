@@ -26,41 +26,25 @@ public class MyPermissionsProvider implements PermissionProvider {
     
     @Override
     public void addUserPermissions(@Nonnull UUID uuid, @Nonnull Set<String> permissions) {
-        var config = configManager.getConfig();
-        var user = config.getUsers().computeIfAbsent(uuid.toString(), k -> new MyPermissionsConfig.UserData());
-        
-        List<String> permList = user.getPermissions();
-        if (permList == null) {
-            permList = new ArrayList<>();
-            user.setPermissions(permList);
-        }
-        
-        for (String perm : permissions) {
-            if (!permList.contains(perm)) {
-                permList.add(perm);
+        configManager.update(config -> {
+            List<String> permList = config.editOrCreateUser(uuid.toString()).getPermissions();
+            boolean changed = false;
+            for (String perm : permissions) {
+                if (!permList.contains(perm)) {
+                    permList.add(perm);
+                    changed = true;
+                }
             }
-        }
-        
-        configManager.save();
-        permissionManager.clearCache(uuid);
+            return changed;
+        });
     }
     
     @Override
     public void removeUserPermissions(@Nonnull UUID uuid, @Nonnull Set<String> permissions) {
-        var config = configManager.getConfig();
-        var user = config.getUsers().get(uuid.toString());
-        
-        if (user != null) {
-            List<String> permList = user.getPermissions();
-            if (permList != null) {
-                permList.removeAll(permissions);
-                if (permList.isEmpty()) {
-                    user.setPermissions(null);
-                }
-                configManager.save();
-                permissionManager.clearCache(uuid);
-            }
-        }
+        configManager.update(config -> {
+            var user = config.editUser(uuid.toString());
+            return user != null && user.getPermissions().removeAll(permissions);
+        });
     }
     
     @Nonnull
@@ -81,41 +65,35 @@ public class MyPermissionsProvider implements PermissionProvider {
     
     @Override
     public void addGroupPermissions(@Nonnull String group, @Nonnull Set<String> permissions) {
-        var config = configManager.getConfig();
-        var groupData = config.getGroups().computeIfAbsent(group, k -> new MyPermissionsConfig.GroupData());
-        
-        List<String> permList = groupData.getPermissions();
-        if (permList == null) {
-            permList = new ArrayList<>();
-            groupData.setPermissions(permList);
-        }
-        
-        for (String perm : permissions) {
-            if (!permList.contains(perm)) {
-                permList.add(perm);
+        configManager.update(config -> {
+            boolean changed = false;
+            if (!config.getGroups().containsKey(group)) {
+                config.getGroups().put(group, new MyPermissionsConfig.GroupData());
+                changed = true;
             }
-        }
-        
-        configManager.save();
-        permissionManager.clearAllCache();
+            // Only copy the group once something is actually added
+            List<String> permList = config.getGroups().get(group).getPermissions();
+            boolean editing = false;
+            for (String perm : permissions) {
+                if (!permList.contains(perm)) {
+                    if (!editing) {
+                        permList = config.editGroup(group).getPermissions();
+                        editing = true;
+                    }
+                    permList.add(perm);
+                    changed = true;
+                }
+            }
+            return changed;
+        });
     }
     
     @Override
     public void removeGroupPermissions(@Nonnull String group, @Nonnull Set<String> permissions) {
-        var config = configManager.getConfig();
-        var groupData = config.getGroups().get(group);
-        
-        if (groupData != null) {
-            List<String> permList = groupData.getPermissions();
-            if (permList != null) {
-                permList.removeAll(permissions);
-                if (permList.isEmpty()) {
-                    groupData.setPermissions(null);
-                }
-                configManager.save();
-                permissionManager.clearAllCache();
-            }
-        }
+        configManager.update(config -> {
+            var groupData = config.editGroup(group);
+            return groupData != null && groupData.getPermissions().removeAll(permissions);
+        });
     }
     
     @Nonnull
@@ -136,38 +114,22 @@ public class MyPermissionsProvider implements PermissionProvider {
     
     @Override
     public void addUserToGroup(@Nonnull UUID uuid, @Nonnull String group) {
-        var config = configManager.getConfig();
-        var user = config.getUsers().computeIfAbsent(uuid.toString(), k -> new MyPermissionsConfig.UserData());
-        
-        List<String> groupList = user.getGroups();
-        if (groupList == null) {
-            groupList = new ArrayList<>();
-            user.setGroups(groupList);
-        }
-        
-        if (!groupList.contains(group)) {
+        configManager.update(config -> {
+            List<String> groupList = config.editOrCreateUser(uuid.toString()).getGroups();
+            if (groupList.contains(group)) {
+                return false;
+            }
             groupList.add(group);
-            configManager.save();
-            permissionManager.clearCache(uuid);
-        }
+            return true;
+        });
     }
     
     @Override
     public void removeUserFromGroup(@Nonnull UUID uuid, @Nonnull String group) {
-        var config = configManager.getConfig();
-        var user = config.getUsers().get(uuid.toString());
-        
-        if (user != null) {
-            List<String> groupList = user.getGroups();
-            if (groupList != null) {
-                groupList.remove(group);
-                if (groupList.isEmpty()) {
-                    user.setGroups(null);
-                }
-                configManager.save();
-                permissionManager.clearCache(uuid);
-            }
-        }
+        configManager.update(config -> {
+            var user = config.editUser(uuid.toString());
+            return user != null && user.getGroups().remove(group);
+        });
     }
     
     @Nonnull
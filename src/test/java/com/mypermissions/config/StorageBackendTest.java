@@ -0,0 +1,348 @@
+package com.mypermissions.config;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.mypermissions.config.MyPermissionsConfig.Settings.StorageType;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageBackendTest {
+
+    private static final Gson GSON = new Gson();
+
+    @TempDir
+    Path dataFolder;
+
+    private static StorageBackend open(StorageType type, Path dataFolder) {
+        return switch (type) {
+            case JSON -> new JsonStorage(dataFolder, GSON);
+            case SQLITE -> new SqliteStorage(dataFolder);
+        };
+    }
+
+    private static UserData user(String username, String... groups) {
+        UserData user = new UserData();
+        user.setUsername(username);
+        user.getGroups().addAll(List.of(groups));
+        return user;
+    }
+
+    private static JsonElement dump(Map<String, UserData> users) {
+        return GSON.toJsonTree(new HashMap<>(users));
+    }
+
+    /**
+     * Points config.json at a backend, the way an admin switches it by hand
+     */
+    private void useStorage(StorageType type) throws IOException {
+        Path config = dataFolder.resolve("config.json");
+        String json = Files.readString(config);
+        for (StorageType other : StorageType.values()) {
+            json = json.replace("\"storage\": \"" + name(other) + "\"", "\"storage\": \"" + name(type) + "\"");
+        }
+        Files.writeString(config, json);
+    }
+
+    private static String name(StorageType type) {
+        return type.name().toLowerCase();
+    }
+
+    private ConfigManager openManager(StorageType type) throws IOException {
+        new ConfigManager(dataFolder).close();
+        useStorage(type);
+        return new ConfigManager(dataFolder);
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    void roundTrip(StorageType type) throws IOException {
+        Map<String, UserData> users = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            users.put(UUID.randomUUID().toString(), user("Player" + i, "default", "group" + (i % 3)));
+        }
+
+        try (StorageBackend backend = open(type, dataFolder)) {
+            assertFalse(backend.exists());
+            backend.writeUsers(users, true);
+            assertTrue(backend.exists());
+        }
+        try (StorageBackend backend = open(type, dataFolder)) {
+            assertEquals(dump(users), dump(backend.loadUsers()));
+
+            // Replacing drops the users that aren't there anymore
+            Map<String, UserData> replaced = Map.of("a", user("Alice"));
+            backend.writeUsers(replaced, true);
+            assertEquals(dump(replaced), dump(backend.loadUsers()));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    void lookups(StorageType type) throws IOException {
+        try (StorageBackend backend = open(type, dataFolder)) {
+            assertNull(backend.loadUser("a"));
+            assertNull(backend.findUserByUsername("alice"));
+            assertTrue(backend.usersInGroup("vip").isEmpty());
+
+            backend.upsertUser("a", user("Alice", "default", "vip"));
+            backend.upsertUser("b", user("Bob", "vip"));
+            backend.upsertUser("c", user(null, "default"));
+        }
+        try (StorageBackend backend = open(type, dataFolder)) {
+            assertEquals("Alice", backend.loadUser("a").getUsername());
+            assertNull(backend.loadUser("d"));
+            assertEquals("a", backend.findUserByUsername("ALICE"));
+            assertEquals("b", backend.findUserByUsername("bob"));
+            assertNull(backend.findUserByUsername("carol"));
+            assertEquals(List.of("a", "b"), backend.usersInGroup("vip").stream().sorted().toList());
+            assertEquals(List.of("a", "c"), backend.usersInGroup("default").stream().sorted().toList());
+            assertTrue(backend.usersInGroup("admin").isEmpty());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    void upsertReplaces(StorageType type) throws IOException {
+        try (StorageBackend backend = open(type, dataFolder)) {
+            backend.upsertUser("a", user("Alice", "default", "vip"));
+            backend.upsertUser("a", user("Alicia", "admin"));
+
+            assertEquals("Alicia", backend.loadUser("a").getUsername());
+            assertNull(backend.findUserByUsername("alice"));
+            assertEquals("a", backend.findUserByUsername("alicia"));
+            assertTrue(backend.usersInGroup("vip").isEmpty());
+            assertEquals(List.of("a"), backend.usersInGroup("admin"));
+            assertEquals(1, backend.loadUsers().size());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    void batch(StorageType type) throws IOException {
+        try (StorageBackend backend = open(type, dataFolder)) {
+            backend.upsertUser("old", user("Old", "vip"));
+            backend.batch(true, () -> {
+                for (int i = 0; i < 100; i++) {
+                    backend.upsertUser("user" + i, user("Player" + i, "vip"));
+                }
+                backend.deleteUser("old");
+                backend.upsertUser("user0", user("First", "vip"));
+            });
+        }
+        try (StorageBackend backend = open(type, dataFolder)) {
+            assertEquals(100, backend.loadUsers().size());
+            assertNull(backend.loadUser("old"));
+            assertEquals("First", backend.loadUser("user0").getUsername());
+            assertEquals("user0", backend.findUserByUsername("first"));
+            assertEquals(100, backend.usersInGroup("vip").size());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    void delete(StorageType type) throws IOException {
+        Map<String, UserData> users = new HashMap<>();
+        users.put("a", user("Alice", "default"));
+        users.put("b", user("Bob", "default", "vip"));
+
+        try (StorageBackend backend = open(type, dataFolder)) {
+            backend.writeUsers(users, true);
+            backend.deleteUser("b");
+            // Deleting someone who isn't stored does nothing
+            backend.deleteUser("c");
+        }
+        try (StorageBackend backend = open(type, dataFolder)) {
+            Map<String, UserData> loaded = backend.loadUsers();
+            assertEquals(1, loaded.size());
+            assertNull(loaded.get("b"));
+            assertNull(backend.loadUser("b"));
+            assertNull(backend.findUserByUsername("bob"));
+            assertTrue(backend.usersInGroup("vip").isEmpty());
+            assertEquals("Alice", loaded.get("a").getUsername());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    void usernameLookupAfterReload(StorageType type) throws IOException {
+        ConfigManager configManager = openManager(type);
+        configManager.update(config -> {
+            config.editOrCreateUser("a").setUsername("Alice");
+            config.editOrCreateUser("b").setUsername("Bob");
+            return true;
+        });
+        configManager.update(config -> {
+            config.editUser("b").setUsername("Robert");
+            return true;
+        });
+        configManager.close();
+
+        configManager = new ConfigManager(dataFolder);
+        try {
+            assertEquals("a", configManager.getConfig().getUuidByUsername("alice"));
+            assertEquals("b", configManager.getConfig().getUuidByUsername("ROBERT"));
+            assertNull(configManager.getConfig().getUuidByUsername("Bob"));
+        } finally {
+            configManager.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    void userChangesSkipTheJournal(StorageType type) throws IOException {
+        ConfigManager configManager = openManager(type);
+        configManager.update(config -> {
+            config.editOrCreateUser("a").setUsername("Alice");
+            config.editGroup("default").getPermissions().add("shop.buy");
+            return true;
+        });
+        configManager.close();
+
+        // Only the group went to the journal; the user is in the backend before any compaction
+        String journal = Files.readString(dataFolder.resolve("journal.log"));
+        assertTrue(journal.contains("shop.buy"));
+        assertFalse(journal.contains("Alice"));
+        try (StorageBackend backend = open(type, dataFolder)) {
+            assertEquals("Alice", backend.loadUsers().get("a").getUsername());
+        }
+
+        configManager = new ConfigManager(dataFolder);
+        try {
+            assertEquals("a", configManager.getConfig().getUuidByUsername("alice"));
+            assertTrue(configManager.getConfig().getGroups().get("default").getPermissions().contains("shop.buy"));
+        } finally {
+            configManager.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    void restoreReplacesStoredUsers(StorageType type) throws IOException {
+        ConfigManager configManager = openManager(type);
+        configManager.update(config -> {
+            config.editOrCreateUser("a").setUsername("Stale");
+            return true;
+        });
+
+        // A backup with other users, and a config.json that no longer parses
+        MyPermissionsConfig backup = GSON.fromJson(Files.readString(dataFolder.resolve("config.json")), MyPermissionsConfig.class);
+        backup.setUsers(new HashMap<>(Map.of("a", user("Alice"), "b", user("Bob"))));
+        Files.writeString(dataFolder.resolve("backups").resolve("config_2099-01-01_00-00-00.json"), GSON.toJson(backup));
+        Files.writeString(dataFolder.resolve("config.json"), "{ broken");
+
+        // The restore itself stores the users, before any background save
+        configManager.reload();
+        try (StorageBackend backend = open(type, dataFolder)) {
+            assertEquals("Alice", backend.loadUsers().get("a").getUsername());
+        }
+        assertFalse(Files.readString(dataFolder.resolve("config.json")).contains("Alice"));
+        configManager.close();
+
+        // The backend now holds the backup's users, so they survive the next load
+        configManager = new ConfigManager(dataFolder);
+        try {
+            assertEquals("Alice", configManager.getConfig().getUsers().get("a").getUsername());
+            assertEquals("Bob", configManager.getConfig().getUsers().get("b").getUsername());
+        } finally {
+            configManager.close();
+        }
+    }
+
+    @Test
+    void migrateJsonToSqlite() throws IOException {
+        ConfigManager configManager = openManager(StorageType.JSON);
+        configManager.update(config -> {
+            for (int i = 0; i < 20; i++) {
+                config.editOrCreateUser("user" + i).setUsername("Player" + i);
+            }
+            return true;
+        });
+        configManager.close();
+        assertTrue(Files.isDirectory(dataFolder.resolve("users")));
+
+        useStorage(StorageType.SQLITE);
+        configManager = new ConfigManager(dataFolder);
+        try {
+            assertEquals(20, configManager.getConfig().getUsers().size());
+            assertEquals("user7", configManager.getConfig().getUuidByUsername("player7"));
+        } finally {
+            configManager.close();
+        }
+
+        assertFalse(Files.exists(dataFolder.resolve("users")));
+        try (Stream<Path> files = Files.list(dataFolder)) {
+            assertTrue(files.anyMatch(path -> path.getFileName().toString().startsWith("users.migrated-")));
+        }
+        try (StorageBackend backend = open(StorageType.SQLITE, dataFolder)) {
+            assertEquals(20, backend.loadUsers().size());
+        }
+    }
+
+    @Test
+    void sqliteLookupsUseTheIndexes() throws IOException, SQLException {
+        try (StorageBackend backend = open(StorageType.SQLITE, dataFolder)) {
+            backend.upsertUser("a", user("Alice", "vip"));
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dataFolder.resolve("users.db").toAbsolutePath())) {
+            assertTrue(queryPlan(connection, SqliteStorage.FIND_BY_USERNAME).contains("users_by_username"));
+            assertTrue(queryPlan(connection, SqliteStorage.USERS_IN_GROUP).contains("user_groups_by_group"));
+        }
+    }
+
+    private static String queryPlan(Connection connection, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            statement.setString(1, "x");
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    plan.append(result.getString("detail")).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    @Test
+    void emptySqliteDatabaseExists() throws IOException {
+        openManager(StorageType.SQLITE).close();
+        assertTrue(Files.exists(dataFolder.resolve("users.db")));
+
+        try (StorageBackend backend = open(StorageType.SQLITE, dataFolder)) {
+            assertTrue(backend.exists());
+            assertTrue(backend.loadUsers().isEmpty());
+        }
+
+        // Reopening finds the users where they are, so nothing is moved or rewritten
+        long modified = Files.getLastModifiedTime(dataFolder.resolve("config.json")).toMillis();
+        ConfigManager configManager = new ConfigManager(dataFolder);
+        try {
+            assertNotNull(configManager.getConfig());
+        } finally {
+            configManager.close();
+        }
+        assertEquals(modified, Files.getLastModifiedTime(dataFolder.resolve("config.json")).toMillis());
+    }
+}
@@ -0,0 +1,113 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.ConfigManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Cached permission checks must not allocate. Same checks as HasPermissionBenchmark,
+ * measured with the thread's allocation counter so it runs with the regular tests.
+ */
+class CacheHitAllocationTest {
+
+    private static final PermissionNode ADMIN = PermissionNode.of("mypermissions.admin");
+    private static final PermissionNode FLY = PermissionNode.of("myplugin.fly");
+    private static final PermissionNode UNKNOWN = PermissionNode.of("otherplugin.fly");
+    private static final int HITS = 200_000;
+
+    @TempDir
+    Path dataFolder;
+
+    private ConfigManager configManager;
+    private PermissionManager permissionManager;
+    private UUID uuid;
+    private String uuidString;
+
+    @BeforeEach
+    void setUp() {
+        configManager = new ConfigManager(dataFolder);
+        permissionManager = new PermissionManager(configManager.getConfig());
+        configManager.addListener(permissionManager::recompile);
+
+        uuid = UUID.randomUUID();
+        uuidString = uuid.toString();
+        configManager.update(config -> {
+            // No superuser group, so wildcard matches go through the result cache
+            config.editOrCreateUser(uuidString).getPermissions().addAll(List.of("mypermissions.admin", "myplugin.*"));
+            return true;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        permissionManager.close();
+        configManager.close();
+    }
+
+    @Test
+    void uuidAndHandle() {
+        assertAllocationFree(() -> permissionManager.hasPermission(uuid, ADMIN), true);
+    }
+
+    @Test
+    void uuidAndWildcardHandle() {
+        assertAllocationFree(() -> permissionManager.hasPermission(uuid, FLY), true);
+    }
+
+    @Test
+    void uuidAndUngrantedHandle() {
+        assertAllocationFree(() -> permissionManager.hasPermission(uuid, UNKNOWN), false);
+    }
+
+    @Test
+    void uuidAndName() {
+        assertAllocationFree(() -> permissionManager.hasPermission(uuid, "mypermissions.admin"), true);
+    }
+
+    @Test
+    void uuidStringAndName() {
+        assertAllocationFree(() -> permissionManager.hasPermission(uuidString, "myplugin.fly"), true);
+    }
+
+    /**
+     * Fills the caches, then counts what the calling thread allocates over many hits
+     */
+    private static void assertAllocationFree(BooleanSupplier check, boolean expected) {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+            "JVM can't count allocated bytes per thread");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+            "JVM can't count allocated bytes per thread");
+
+        // Warm up past the interpreter, so the measured loop runs the compiled hit path
+        for (int i = 0; i < HITS; i++) {
+            check.getAsBoolean();
+        }
+
+        long thread = Thread.currentThread().threadId();
+        int mismatches = 0;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < HITS; i++) {
+            if (check.getAsBoolean() != expected) {
+                mismatches++;
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertFalse(mismatches > 0, "Cached check gave the wrong answer");
+        // The counter itself may cost a few bytes; any allocation per hit costs megabytes
+        assertTrue(allocated < 1024, () -> "Cached checks allocated " + allocated + " bytes over " + HITS + " hits");
+    }
+}
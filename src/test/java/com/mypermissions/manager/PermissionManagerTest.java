@@ -0,0 +1,431 @@
+package com.mypermissions.manager;
+
+import com.mypermissions.config.ConfigManager;
+import com.mypermissions.config.MyPermissionsConfig;
+import com.mypermissions.config.MyPermissionsConfig.GroupData;
+import com.mypermissions.config.MyPermissionsConfig.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the compiled engine (tries, wildcard automaton, bitsets, shared segments and
+ * epoch invalidation) against the original list-scanning algorithm, kept below as
+ * {@link Baseline}
+ */
+class PermissionManagerTest {
+
+    private static final String[] GROUPS = {"default", "admin", "vip", "mod", "builder"};
+    private static final String[] SEGMENTS = {"a", "b", "c", "ab", "é", "a+b", "x(y)", "[z]", "q?", "$"};
+    private static final String[] WILDCARD_SEGMENTS = {"*", "a*", "*b", "a*b", "+*"};
+    private static final int USERS = 8;
+
+    @TempDir
+    Path dataFolder;
+
+    private ConfigManager configManager;
+    private PermissionManager permissionManager;
+
+    @BeforeEach
+    void setUp() {
+        configManager = new ConfigManager(dataFolder);
+        permissionManager = new PermissionManager(configManager.getConfig());
+        configManager.addListener(permissionManager::recompile);
+    }
+
+    @AfterEach
+    void tearDown() {
+        permissionManager.close();
+        configManager.close();
+    }
+
+    private static UUID uuidOf(int user) {
+        return new UUID(0x4d5950L, user);
+    }
+
+    private void setGroup(String name, List<String> permissions, List<String> parents) {
+        configManager.update(config -> {
+            config.getGroups().put(name, new GroupData(new ArrayList<>(permissions), new ArrayList<>(parents), "", "", 0));
+            return true;
+        });
+    }
+
+    private void setUser(UUID uuid, List<String> groups, List<String> permissions) {
+        configManager.update(config -> {
+            config.getUsers().put(uuid.toString(), new UserData(null, new ArrayList<>(groups), new ArrayList<>(permissions)));
+            return true;
+        });
+    }
+
+    @Test
+    void listRules() {
+        List<String> permissions = List.of("-shop.sell", "shop.*", "-admin.*", "admin.ban", "chat.*.color", "-chat.*.bold");
+        assertFalse(Baseline.checkPermissionList(permissions, "shop.sell"));
+        assertTrue(Baseline.checkPermissionList(permissions, "shop.buy"));
+        assertTrue(Baseline.checkPermissionList(permissions, "shop"));
+        assertTrue(Baseline.checkPermissionList(permissions, "admin.ban"));
+        assertFalse(Baseline.checkPermissionList(permissions, "admin.kick"));
+        assertTrue(Baseline.checkPermissionList(permissions, "chat.global.color"));
+        assertTrue(Baseline.checkPermissionList(permissions, "chat.a.b.color"));
+        assertFalse(Baseline.checkPermissionList(permissions, "chat.global.bold"));
+        assertEquals(null, Baseline.checkPermissionList(permissions, "shopping"));
+
+        CompiledPermissions compiled = CompiledPermissions.compile(permissions);
+        for (String node : List.of("shop.sell", "shop.buy", "shop", "shopping", "admin.ban", "admin.kick",
+                "chat.global.color", "chat.a.b.color", "chat.global.bold", "chat.color", "other")) {
+            assertEquals(Baseline.checkPermissionList(permissions, node), compiled.check(node), node);
+            assertEquals(Baseline.checkPermissionList(permissions, node), compiled.check(PermissionNode.of(node)), node);
+        }
+    }
+
+    @Test
+    void regexMetacharactersAreLiteral() {
+        CompiledPermissions compiled = CompiledPermissions.compile(List.of("a+b.*.c", "x(y).*", "[z].*.q?"));
+        assertTrue(compiled.check("a+b.any.c"));
+        assertEquals(null, compiled.check("aab.any.c"));
+        assertEquals(null, compiled.check("ab.any.c"));
+        assertTrue(compiled.check("x(y).any"));
+        assertEquals(null, compiled.check("xy.any"));
+        assertTrue(compiled.check("[z].any.q?"));
+        assertEquals(null, compiled.check("z.any.q"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void compiledListsMatchBaseline(long seed) {
+        Random random = new Random(seed);
+        for (int list = 0; list < 500; list++) {
+            List<String> permissions = randomList(random, random.nextInt(list % 2 == 0 ? 6 : 30));
+            CompiledPermissions compiled = CompiledPermissions.compile(permissions);
+            for (int i = 0; i < 10; i++) {
+                String node = randomNode(random, random.nextInt(4) == 0);
+                Boolean expected = Baseline.checkPermissionList(permissions, node);
+                assertEquals(expected, compiled.check(node), () -> permissions + " " + node);
+                assertEquals(expected, compiled.check(PermissionNode.of(node)), () -> permissions + " " + node);
+            }
+        }
+    }
+
+    @Test
+    void inheritanceCycles() {
+        setGroup("a", List.of("one"), List.of("b"));
+        setGroup("b", List.of("-one", "two"), List.of("c", "a"));
+        setGroup("c", List.of("three.*"), List.of("a"));
+        UUID uuid = uuidOf(1);
+        setUser(uuid, List.of("b"), List.of());
+
+        assertMatchesBaseline(List.of("one", "two", "three.x", "four"));
+        assertFalse(permissionManager.hasPermission(uuid, "one"));
+        assertTrue(permissionManager.hasPermission(uuid, "three.x"));
+
+        // Breaking the cycle changes which group answers first
+        setGroup("b", List.of("two"), List.of("c"));
+        assertMatchesBaseline(List.of("one", "two", "three.x", "four"));
+        assertTrue(permissionManager.hasPermission(uuid, "one"));
+    }
+
+    @Test
+    void parentEditsSeeTheDraftHierarchy() {
+        setGroup("a", List.of(), List.of());
+        setGroup("b", List.of(), List.of("a"));
+        setGroup("c", List.of(), List.of());
+
+        // The draft already makes c inherit from b, so a can't take c as parent in the same edit
+        assertFalse(configManager.update(config -> {
+            config.editGroup("c").getParents().add("b");
+            return !config.inheritsFrom("c", "a");
+        }));
+        assertTrue(configManager.getConfig().inheritsFrom("b", "a"));
+        assertTrue(configManager.getConfig().inheritsFrom("a", "a"));
+        assertFalse(configManager.getConfig().inheritsFrom("c", "a"));
+        assertFalse(configManager.getConfig().inheritsFrom("missing", "a"));
+    }
+
+    @Test
+    void invalidatesAfterEachKindOfChange() {
+        UUID uuid = uuidOf(1);
+        UUID other = uuidOf(2);
+        setGroup("vip", List.of("fly"), List.of("default"));
+        setUser(uuid, List.of("vip"), List.of());
+        setUser(other, List.of("vip"), List.of());
+        List<String> nodes = List.of("fly", "build", "mypermissions.user", "shop.buy");
+        assertMatchesBaseline(nodes);
+        assertTrue(permissionManager.hasPermission(uuid, "fly"));
+
+        // Group permissions
+        setGroup("vip", List.of("-fly", "shop.*"), List.of("default"));
+        assertMatchesBaseline(nodes);
+        assertFalse(permissionManager.hasPermission(uuid, "fly"));
+
+        // Group parents
+        setGroup("builder", List.of("build"), List.of());
+        setGroup("vip", List.of("-fly", "shop.*"), List.of("builder"));
+        assertMatchesBaseline(nodes);
+        assertTrue(permissionManager.hasPermission(uuid, "build"));
+
+        // One user's own permissions, leaving the other user of the ruleset alone
+        setUser(uuid, List.of("vip"), List.of("fly"));
+        assertMatchesBaseline(nodes);
+        assertTrue(permissionManager.hasPermission(uuid, "fly"));
+        assertFalse(permissionManager.hasPermission(other, "fly"));
+
+        // Default group
+        setGroup("fallback", List.of("*"), List.of());
+        configManager.update(config -> {
+            config.setDefaultGroup("fallback");
+            return true;
+        });
+        assertMatchesBaseline(nodes);
+        assertTrue(permissionManager.hasPermission(uuidOf(7), "anything"));
+
+        // Removing a user and a group
+        configManager.update(config -> {
+            config.getUsers().remove(uuid.toString());
+            config.getGroups().remove("builder");
+            return true;
+        });
+        assertMatchesBaseline(nodes);
+    }
+
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void randomMutationsMatchBaseline(long seed) {
+        Random random = new Random(seed);
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            nodes.add(randomNode(random, i % 8 == 0));
+        }
+
+        for (int step = 0; step < 40; step++) {
+            mutate(random);
+            assertMatchesBaseline(nodes);
+        }
+    }
+
+    static LongStream seeds() {
+        return LongStream.range(0, 40);
+    }
+
+    /**
+     * Checks every user (and one nobody stored) through each public entry point
+     */
+    private void assertMatchesBaseline(List<String> nodes) {
+        MyPermissionsConfig config = configManager.getConfig();
+        String[] batch = nodes.toArray(new String[0]);
+        for (int user = 0; user <= USERS; user++) {
+            UUID uuid = uuidOf(user);
+            BitSet results = permissionManager.hasPermissions(uuid, batch);
+            for (int i = 0; i < batch.length; i++) {
+                String node = batch[i];
+                boolean expected = Baseline.hasPermission(config, uuid.toString(), node);
+                String context = uuid + " " + node;
+                assertEquals(expected, permissionManager.hasPermission(uuid.toString(), node), context);
+                assertEquals(expected, permissionManager.hasPermission(uuid, node), context);
+                assertEquals(expected, permissionManager.hasPermission(uuid, PermissionNode.of(node)), context);
+                assertEquals(expected, results.get(i), context);
+            }
+        }
+    }
+
+    private void mutate(Random random) {
+        String group = GROUPS[random.nextInt(GROUPS.length)];
+        String parent = GROUPS[random.nextInt(GROUPS.length)];
+        String uuid = uuidOf(random.nextInt(USERS)).toString();
+        String permission = randomRule(random);
+        int operation = random.nextInt(10);
+        int index = random.nextInt(100);
+
+        switch (operation) {
+            case 8 -> {
+                if (random.nextBoolean()) {
+                    permissionManager.clearCache();
+                } else {
+                    permissionManager.clearCache(UUID.fromString(uuid));
+                }
+                return;
+            }
+            case 9 -> {
+                configManager.update(config -> {
+                    if (random.nextInt(4) == 0) {
+                        config.setDefaultGroup(group);
+                    } else if (random.nextBoolean()) {
+                        config.getUsers().remove(uuid);
+                    } else {
+                        config.getGroups().remove(group);
+                    }
+                    return true;
+                });
+                return;
+            }
+            default -> { }
+        }
+
+        configManager.update(config -> {
+            config.getGroups().putIfAbsent(group, new GroupData());
+            GroupData groupData = config.editGroup(group);
+            switch (operation) {
+                case 0, 1 -> groupData.getPermissions().add(permission);
+                case 2 -> {
+                    if (!groupData.getPermissions().isEmpty()) {
+                        groupData.getPermissions().remove(index % groupData.getPermissions().size());
+                    }
+                }
+                case 3 -> {
+                    if (!groupData.getParents().remove(parent)) {
+                        groupData.getParents().add(parent);
+                    }
+                }
+                case 4, 5 -> {
+                    UserData userData = config.editOrCreateUser(uuid);
+                    if (!userData.getGroups().remove(parent)) {
+                        userData.getGroups().add(parent);
+                    }
+                }
+                default -> config.editOrCreateUser(uuid).getPermissions().add(permission);
+            }
+            return true;
+        });
+    }
+
+    private static List<String> randomList(Random random, int size) {
+        List<String> permissions = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            permissions.add(randomRule(random));
+        }
+        return permissions;
+    }
+
+    private static String randomRule(Random random) {
+        String node = random.nextInt(12) == 0 ? "*" : randomNode(random, random.nextInt(3) == 0);
+        return random.nextInt(3) == 0 ? "-" + node : node;
+    }
+
+    private static String randomNode(Random random, boolean wildcards) {
+        StringBuilder node = new StringBuilder();
+        int segments = 1 + random.nextInt(4);
+        for (int i = 0; i < segments; i++) {
+            if (i > 0) {
+                node.append('.');
+            }
+            if (wildcards && random.nextInt(3) == 0) {
+                node.append(WILDCARD_SEGMENTS[random.nextInt(WILDCARD_SEGMENTS.length)]);
+            } else {
+                node.append(SEGMENTS[random.nextInt(random.nextInt(4) == 0 ? SEGMENTS.length : 4)]);
+            }
+        }
+        return node.toString();
+    }
+
+    /**
+     * The original algorithm: scans each permission list in order and walks the parent
+     * graph recursively. Only change: the parts of a mid-node wildcard around '*' are
+     * quoted, since rules are matched literally rather than as regex syntax.
+     */
+    private static final class Baseline {
+
+        static boolean hasPermission(MyPermissionsConfig config, String uuid, String node) {
+            UserData userData = config.getUsers().get(uuid);
+            Set<String> visitedGroups = new HashSet<>();
+
+            if (userData != null) {
+                Boolean userPermission = checkPermissionList(userData.getPermissions(), node);
+                if (userPermission != null) {
+                    return userPermission;
+                }
+                for (String groupName : userData.getGroups()) {
+                    Boolean groupPermission = checkGroupPermission(groupName, node, visitedGroups, config);
+                    if (groupPermission != null) {
+                        return groupPermission;
+                    }
+                }
+            }
+
+            Boolean defaultPermission = checkGroupPermission(config.getDefaultGroup(), node, visitedGroups, config);
+            return defaultPermission != null && defaultPermission;
+        }
+
+        private static Boolean checkGroupPermission(String groupName, String node, Set<String> visited, MyPermissionsConfig config) {
+            if (!visited.add(groupName)) {
+                return null;
+            }
+            GroupData group = config.getGroups().get(groupName);
+            if (group == null) {
+                return null;
+            }
+
+            Boolean groupPermission = checkPermissionList(group.getPermissions(), node);
+            if (groupPermission != null) {
+                return groupPermission;
+            }
+            for (String parentGroup : group.getParents()) {
+                Boolean parentPermission = checkGroupPermission(parentGroup, node, visited, config);
+                if (parentPermission != null) {
+                    return parentPermission;
+                }
+            }
+            return null;
+        }
+
+        static Boolean checkPermissionList(List<String> permissions, String node) {
+            if (permissions == null || permissions.isEmpty()) {
+                return null;
+            }
+            if (permissions.contains("-" + node)) {
+                return false;
+            }
+            if (permissions.contains(node)) {
+                return true;
+            }
+            if (permissions.contains("*")) {
+                return true;
+            }
+
+            for (String permission : permissions) {
+                boolean isNegation = permission.startsWith("-");
+                String permNode = isNegation ? permission.substring(1) : permission;
+
+                if (permNode.endsWith(".*")) {
+                    String prefix = permNode.substring(0, permNode.length() - 2);
+                    if (node.startsWith(prefix + ".") || node.equals(prefix)) {
+                        return !isNegation;
+                    }
+                }
+
+                if (permNode.contains("*")) {
+                    StringBuilder regex = new StringBuilder();
+                    String[] parts = permNode.split("\\*", -1);
+                    for (int i = 0; i < parts.length; i++) {
+                        if (i > 0) {
+                            regex.append(".*");
+                        }
+                        if (!parts[i].isEmpty()) {
+                            regex.append(Pattern.quote(parts[i]));
+                        }
+                    }
+                    if (node.matches(regex.toString())) {
+                        return !isNegation;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}